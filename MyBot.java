@@ -4,9 +4,72 @@
 import hlt.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.Random;
 
-public class MyBot {
+public class MyBot implements Bot {
+    // Stop starting new planning stages once less than this is left of the turn budget.
+    private static final long SAFETY_MARGIN_MILLIS = 250;
+
+    // Shared by every instance so that bots simulated in one process do not each start a pool.
+    private static final ParallelPlanner PLANNER = new ParallelPlanner();
+    // How many turns ahead returning ships reserve their paths.
+    private static final int TRAFFIC_HORIZON = 8;
+
+    // Strategy knobs, overridable per instance so variants can be compared in self-play.
+    // Stop spawning ships after this fraction of the game.
+    private final double spawnCutoff;
+    // Head home for the endgame once the trip back takes this many turns less than what is left.
+    private final int endgameMargin;
+    // "greedy" uses highestValueLocation and holds full ships to their way home; "trip" scores
+    // whole travel/mine/return trips with the MiningPlanner, and stays opt-in until it beats greedy in self-play.
+    private final boolean planTrips;
+    // "cheapest" routes ships around expensive and enemy cells with the PathFinder, "direct" takes the Manhattan moves.
+    private final boolean findPaths;
+    // "cooperative" plans returning ships' paths together through a ReservationTable; off
+    // by default until it shows a gain in self-play over "independent".
+    private final boolean cooperativeReturns;
+    // "build" turns a ship into a dropoff when the DropoffPlanner finds a site worth it, "none" never does.
+    private final boolean buildDropoffs;
+    // "predicted" keeps off the cells the EnemyMotion model expects at least enemyRisk
+    // enemy ships in next turn, "blanket" off every cell next to an enemy ship.
+    private final boolean predictEnemies;
+    private final float enemyRisk;
+    // What a turn of travel is worth in halite this turn, for the PathFinder.
+    private int turnCost;
+    private ReservationTable traffic;
+    // Where the next dropoff goes and which ship builds it, kept from turn to turn while the site still pays off.
+    private Position dropoffSite;
+    private EntityId builderId;
+    // This turn's builder, and whether it is on the site with enough halite to build.
+    private Ship builder;
+    private boolean buildNow;
+
+    private final Random rng;
+    private TurnScheduler scheduler;
+
+    public MyBot(final long rngSeed, final Map<String, String> params) {
+        this.rng = new Random(rngSeed);
+        this.spawnCutoff = Double.parseDouble(params.getOrDefault("spawnCutoff", "0.375"));
+        this.endgameMargin = Integer.parseInt(params.getOrDefault("endgameMargin", "15"));
+        this.planTrips = params.getOrDefault("targets", "greedy").equals("trip");
+        this.findPaths = params.getOrDefault("paths", "cheapest").equals("cheapest");
+        this.cooperativeReturns = findPaths && params.getOrDefault("returns", "independent").equals("cooperative");
+        this.buildDropoffs = params.getOrDefault("dropoffs", "build").equals("build");
+        this.predictEnemies = params.getOrDefault("enemies", "predicted").equals("predicted");
+        this.enemyRisk = Float.parseFloat(params.getOrDefault("enemyRisk", "0.3"));
+    }
+
+    public MyBot(final long rngSeed) {
+        this(rngSeed, Collections.emptyMap());
+    }
+
+    public MyBot() {
+        this(System.nanoTime());
+    }
+
     public static void main(final String[] args) {
         final long rngSeed;
         if (args.length > 1) {
@@ -14,83 +77,307 @@ public class MyBot {
         } else {
             rngSeed = System.nanoTime();
         }
-        final Random rng = new Random(rngSeed);
+        final MyBot bot = new MyBot(rngSeed);
 
         Game game = new Game();
         // At this point "game" variable is populated with initial map data.
         // This is a good place to do computationally expensive start-up pre-processing.
         // As soon as you call "ready" function below, the 2 second per turn timer will start.
-        game.ready("MyJavaBot");
+        bot.init(game);
+        game.ready(bot.name());
 
         Log.log("Successfully created bot! My Player ID is " + game.myId + ". Bot rng seed is " + rngSeed + ".");
 
         for (;;) {
             game.updateFrame();
-            final Player me = game.me;
-            final GameMap gameMap = game.gameMap;
+            game.endTurn(bot.takeTurn(game));
+        }
+    }
+
+    @Override
+    public String name() {
+        return "MyJavaBot";
+    }
+
+    @Override
+    public void init(final Game game) {
+        final MapPrecomputation precomputed = game.gameMap.precompute(game.players);
+        Log.log("Map precomputed: " + precomputed.candidateSites.length + " candidate dropoff sites");
+
+        // Every stage produces a full set of commands; the last one to finish in time is sent.
+        scheduler = new TurnScheduler(game.clock, SAFETY_MARGIN_MILLIS)
+                .addStage("hold", (commands, deadline) -> holdPosition(game.me, commands))
+                .addStage("greedy", (commands, deadline) -> planTurn(game, commands, deadline));
+    }
+
+    @Override
+    public ArrayList<Command> takeTurn(final Game game) {
+        return scheduler.run();
+    }
+
+    // Always valid fallback: every ship stays where it is.
+    private static void holdPosition(final Player me, final ArrayList<Command> commandQueue) {
+        for (final Ship ship : me.ships.values()) {
+            commandQueue.add(ship.stayStill());
+        }
+    }
+
+    // What a ship decided to do, worked out without touching shared state.
+    private static final class ShipPlan {
+        enum Mode { BUILD, ENDGAME, ENROUTE, MINE, STAY }
+
+        final Ship ship;
+        final Mode mode;
+        final Entity dropoff;
+        final ArrayList<Direction> moves;
+
+        ShipPlan(final Ship ship, final Mode mode, final Entity dropoff, final ArrayList<Direction> moves) {
+            this.ship = ship;
+            this.mode = mode;
+            this.dropoff = dropoff;
+            this.moves = moves;
+        }
+    }
+
+    // Runs on the planner's threads, so it must only read the map.
+    private ShipPlan planShip(final Game game, final Ship ship, final TurnScheduler.Deadline deadline) {
+        final Player me = game.me;
+        final GameMap gameMap = game.gameMap;
+
+        // out of time: the ships not planned yet stay where they are this turn
+        if (deadline.passed()) {
+            return new ShipPlan(ship, ShipPlan.Mode.STAY, null, null);
+        }
+        //if the game is close to ending have the ships use an end-game move
+        if (gameMap.calculateDistance(ship.position, me.shipyard.position) >= Constants.MAX_TURNS-game.turnNumber-endgameMargin) {
+            return new ShipPlan(ship, ShipPlan.Mode.ENDGAME, gameMap.getNearestDropoff(ship, me), null);
+        }
+        //the builder heads for the dropoff site and waits there until there is enough halite to build
+        else if (ship == builder) {
+            if (ship.position.equals(dropoffSite)) {
+                return new ShipPlan(ship, buildNow ? ShipPlan.Mode.BUILD : ShipPlan.Mode.STAY, null, null);
+            }
+            if (gameMap.canMove(ship)) {
+                return new ShipPlan(ship, ShipPlan.Mode.MINE, null, movesTo(gameMap, me, ship, dropoffSite));
+            }
+        }
+        //if ship is full/almost full, or enroute, move to nearest dropoff location
+        else if (ship.enroute || ship.isFull()) {
+            final Entity nearestDropoff = gameMap.getNearestDropoff(ship, me);
+            return new ShipPlan(ship, ShipPlan.Mode.ENROUTE, nearestDropoff, movesHome(gameMap, ship, nearestDropoff));
+        }
+        // if the ship has enough resource to move from the current spot, find most valuable spot
+        else if(gameMap.canMove(ship)) {
+            if (!planTrips) {
+                return new ShipPlan(ship, ShipPlan.Mode.MINE, null,
+                        movesTo(gameMap, me, ship, gameMap.highestValueLocation(ship, me)));
+            }
+            final MiningPlanner.Plan trip = gameMap.miningPlanner().plan(ship, me);
+            // no trip beats delivering the cargo now, so head home
+            if (trip.miningTurns == 0 && ship.halite > 0) {
+                final Entity nearestDropoff = gameMap.getNearestDropoff(ship, me);
+                return new ShipPlan(ship, ShipPlan.Mode.ENROUTE, nearestDropoff, movesHome(gameMap, ship, nearestDropoff));
+            }
+            return new ShipPlan(ship, ShipPlan.Mode.MINE, null, movesTo(gameMap, me, ship, trip.target));
+        }
+        // otherwise stay still
+        return new ShipPlan(ship, ShipPlan.Mode.STAY, null, null);
+    }
+
+    private ArrayList<Direction> movesTo(final GameMap gameMap, final Player me, final Ship ship, final Position target) {
+        return findPaths
+                ? gameMap.pathFinder().moves(ship.position, target, me, turnCost)
+                : gameMap.getUnsafeMoves(ship.position, target);
+    }
+
+    // The first step of the cheapest way to any dropoff, then the direct moves to the nearest one.
+    private ArrayList<Direction> movesHome(final GameMap gameMap, final Ship ship, final Entity nearestDropoff) {
+        final ArrayList<Direction> moves = gameMap.getUnsafeMoves(ship.position, nearestDropoff.position);
+        if (findPaths) {
+            final Direction first = gameMap.pathFinder().homeStep(gameMap.index(ship.position));
+            if (first != Direction.STILL) {
+                moves.remove(first);
+                moves.add(0, first);
+            }
+        }
+        return moves;
+    }
+
+    // Plans the paths home of returning ships one after another through a space-time
+    // reservation table, closest to home first, so they queue into the dropoffs
+    // instead of meeting at them. Ships that are staying put hold their cell.
+    private void routeReturningShips(final Game game, final ArrayList<ShipPlan> plans) {
+        final GameMap gameMap = game.gameMap;
+        final PathFinder pathFinder = gameMap.pathFinder();
+        if (traffic == null) {
+            traffic = new ReservationTable(gameMap.width * gameMap.height, TRAFFIC_HORIZON);
+        }
+        traffic.clear();
+
+        final ArrayList<ShipPlan> returning = new ArrayList<>();
+        for (final ShipPlan plan : plans) {
+            if (plan.mode == ShipPlan.Mode.STAY || (plan.mode == ShipPlan.Mode.MINE && plan.moves.isEmpty())) {
+                traffic.reserveFrom(gameMap.index(plan.ship.position), 1);
+            } else if (plan.mode == ShipPlan.Mode.ENROUTE) {
+                returning.add(plan);
+            }
+        }
+        returning.sort(Comparator.comparingInt(plan -> pathFinder.homeCost(gameMap.index(plan.ship.position))));
+
+        for (final ShipPlan plan : returning) {
+            final int index = gameMap.index(plan.ship.position);
+            if (!gameMap.canMove(plan.ship)) {
+                traffic.reserve(index, 1);
+                continue;
+            }
+            final Direction first = pathFinder.reserveHomePath(index, game.me, turnCost, traffic);
+            if (first == null || first == Direction.STILL) {
+                // boxed in, or told to wait: the move resolver already holds a ship back
+                // when its way is taken this turn, and forcing a wait stalls the queue
+                // whenever the ship ahead does not move as planned
+                continue;
+            }
+            plan.moves.remove(first);
+            plan.moves.add(0, first);
+        }
+    }
+
+    // Picks the dropoff site and its builder for this turn. A site is kept until it
+    // no longer pays off (or has been built on), and its builder until it is lost.
+    private void planDropoff(final Game game) {
+        final Player me = game.me;
+        final GameMap gameMap = game.gameMap;
+        final DropoffPlanner planner = gameMap.dropoffPlanner();
+        final int turnsLeft = Constants.MAX_TURNS - game.turnNumber;
+
+        final Position best = gameMap.bestDropoffLocation(me, game.players);
+        if (dropoffSite == null || !planner.paysOff(dropoffSite, me, game.players, turnsLeft)) {
+            dropoffSite = best != null && planner.paysOff(best, me, game.players, turnsLeft) ? best : null;
+            builderId = null;
+        }
+
+        builder = null;
+        buildNow = false;
+        if (dropoffSite == null) {
+            return;
+        }
+        if (builderId != null) {
+            builder = me.ships.get(builderId.id);
+        }
+        if (builder == null) {
+            builder = planner.builder(dropoffSite, me);
+            builderId = builder.id;
+        }
+        buildNow = builder.position.equals(dropoffSite)
+                && me.halite + builder.halite + gameMap.at(dropoffSite).halite() >= Constants.DROPOFF_COST;
+        Log.debug(() -> "Dropoff site " + dropoffSite + " builder " + builderId + (buildNow ? " building" : ""));
+    }
+
+    private void planTurn(final Game game, final ArrayList<Command> commandQueue, final TurnScheduler.Deadline deadline) {
+        final Player me = game.me;
+        final GameMap gameMap = game.gameMap;
+        game.metrics.begin("markEnemyShips");
+        if (predictEnemies) {
+            gameMap.markEnemyShips(me, game.players, enemyRisk);
+        } else {
             gameMap.markEnemyShips(me, game.players);
+        }
+        game.metrics.end("markEnemyShips");
 
-            final ArrayList<Command> commandQueue = new ArrayList<>();
-            ArrayList<Ship> myShips = new ArrayList<Ship>();
+        ArrayList<Ship> myShips = new ArrayList<Ship>();
 
-            //TODO: Find inspired locations
+        game.metrics.begin("inspiration");
+        gameMap.updateInspiration(me, game.players);
+        game.metrics.end("inspiration");
 
-            //TODO: Make a hash/set of shipContainers for their initialization variables each turn
+        if (buildDropoffs) {
+            game.metrics.begin("dropoff");
+            planDropoff(game);
+            game.metrics.end("dropoff");
+        }
 
-            //TODO: get ships to make a dropoff when resource near the shipyard is low
+        //Set ships' enroute to be false if on a dropoff/shipyard
+        me.clearEnroute(gameMap);
 
-            //Set ships' enroute to be false if on a dropoff/shipyard
-            me.clearEnroute(gameMap);
+        // from here on the map is this turn's read-only snapshot; moves are reserved in an overlay
+        gameMap.freeze();
+        final MapOverlay reservations = gameMap.overlay();
 
-            for (final Ship ship : me.ships.values()) {
-                Log.log("Ship id: "+ship.id+" Enroute: "+ship.enroute);
-                //if the game is close to ending have the ships use an end-game move
-                if (gameMap.calculateDistance(ship.position, me.shipyard.position) >= Constants.MAX_TURNS-game.turnNumber-15) {
+        if (findPaths) {
+            game.metrics.begin("homeField");
+            turnCost = (int) Math.max(1, gameMap.totalHalite() / (gameMap.width * gameMap.height) / Constants.MOVE_COST_RATIO);
+            gameMap.pathFinder().updateHomeField(me, turnCost);
+            game.metrics.end("homeField");
+        }
+
+        // evaluate every ship in parallel against the map as it stands, then apply the plans in order
+        game.metrics.begin("targets");
+        final ArrayList<ShipPlan> plans = PLANNER.evaluate(gameMap, new ArrayList<>(me.ships.values()), ship -> planShip(game, ship, deadline));
+        game.metrics.end("targets");
+
+        if (cooperativeReturns) {
+            game.metrics.begin("traffic");
+            routeReturningShips(game, plans);
+            game.metrics.end("traffic");
+        }
+
+        // halite left for spawning after this turn's dropoff
+        int budget = me.halite;
+        for (final ShipPlan plan : plans) {
+            final Ship ship = plan.ship;
+            Log.debug(() -> "Ship id: "+ship.id+" Enroute: "+ship.enroute);
+            switch (plan.mode) {
+                case BUILD:
+                    Log.debug(() -> "Ship '" + ship.id + "' is building a dropoff.");
+                    budget -= Constants.DROPOFF_COST - ship.halite - gameMap.at(ship).halite();
+                    commandQueue.add(ship.makeDropoff());
+                    dropoffSite = null;
+                    builderId = null;
+                    break;
+                case ENDGAME:
                     //move to nearest dropoff w/ intent to crash
                     // TODO: Make a move method that causes ships to crash on dropoff/shipyard to be more efficient
                     // (Try having the value system that makes ships want to branch out more first)
-                    Log.log("Ship '" + ship.id + "' is in endgame.");
-                    commandQueue.add(
-                            ship.move(
-                                    gameMap.crashNavigate(ship, gameMap.getNearestDropoff(ship, me).position)
-                            )
-                    );
-                }
-                //if ship is full/almost full, or enroute, move to nearest dropoff location
-                else if (ship.enroute || ship.isFull()) {
-                    Log.log("Ship '" + ship.id + "' is enroute to " + gameMap.getNearestDropoff(ship, me).id + ".");
-
-                    ship.enroute = true;
-                    ship.moves = gameMap.getUnsafeMoves(ship.position, gameMap.getNearestDropoff(ship, me).position);
+                    Log.debug(() -> "Ship '" + ship.id + "' is in endgame.");
+                    commandQueue.add(ship.move(gameMap.crashNavigate(reservations, ship, plan.dropoff.position)));
+                    break;
+                case ENROUTE:
+                    Log.debug(() -> "Ship '" + ship.id + "' is enroute to " + plan.dropoff.id + ".");
+                    // greedy targets would turn a ship back as soon as it is not full, so it is held
+                    // to its way home; the trip planner weighs going home afresh every turn
+                    ship.enroute = !planTrips;
+                    ship.moves = plan.moves;
                     myShips.add(ship);
-                }
-                // if the ship has enough resource to move from the current spot, find most valuable spot
-                else if(gameMap.canMove(ship)) {
-                    Log.log("Ship '" + ship.id + "' is making a movement.");
-                    ship.moves = gameMap.getUnsafeMoves(ship.position, gameMap.highestValueLocation(ship, me));
+                    break;
+                case MINE:
+                    Log.debug(() -> "Ship '" + ship.id + "' is making a movement.");
+                    ship.moves = plan.moves;
                     myShips.add(ship);
-                }
-                // otherwise stay still
-                else {
+                    break;
+                default:
                     commandQueue.add(ship.stayStill());
-                }
-                Log.log("Ship id: "+ship.id+" Enroute: "+ship.enroute);
+                    break;
             }
+            Log.debug(() -> "Ship id: "+ship.id+" Enroute: "+ship.enroute);
+        }
 
-            // for each ship with an action to move, settle movement disputes
-            while(!(myShips.isEmpty())) {
-                gameMap.newNavigate(myShips.get(0), myShips, commandQueue);
-            }
+        // settle movement disputes for every ship with an action to move at once
+        game.metrics.begin("navigate");
+        gameMap.resolveMoves(reservations, myShips, commandQueue);
+        game.metrics.end("navigate");
 
-            if (
-                game.turnNumber <= (Constants.MAX_TURNS * .375) &&
-                me.halite >= Constants.SHIP_COST &&
-                !gameMap.at(me.shipyard).isOccupied())
-            {
-                commandQueue.add(me.shipyard.spawn());
-            }
+        // hold back what the pending dropoff still needs
+        int reserved = 0;
+        if (dropoffSite != null) {
+            reserved = Math.max(0, Constants.DROPOFF_COST - builder.halite - gameMap.at(dropoffSite).halite());
+        }
 
-            game.endTurn(commandQueue);
+        if (
+            game.turnNumber <= (Constants.MAX_TURNS * spawnCutoff) &&
+            budget >= Constants.SHIP_COST + reserved &&
+            !reservations.isOccupied(me.shipyard.position))
+        {
+            commandQueue.add(me.shipyard.spawn());
         }
     }
 }
@@ -0,0 +1,15 @@
+package hlt;
+
+import java.util.Collection;
+
+// A bot's strategy, kept apart from where its input comes from, so the same code
+// can play the engine over stdin/stdout or run inside a local simulation.
+public interface Bot {
+    String name();
+
+    // Called once the initial map has been read and before ready(); the turn timer is not running yet.
+    void init(Game game);
+
+    // Called after game.updateFrame(); returns the commands for this turn.
+    Collection<Command> takeTurn(Game game);
+}
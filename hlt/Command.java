@@ -1,22 +1,55 @@
 package hlt;
 
+// A command is kept as a few primitive fields and only turned into bytes when
+// Game.endTurn writes the whole turn out at once.
 public class Command {
-    public final String command;
+    public static final char SPAWN = 'g';
+    public static final char CONSTRUCT = 'c';
+    public static final char MOVE = 'm';
+
+    private static final Command SPAWN_SHIP = new Command(SPAWN, -1, ' ');
+
+    public final char type;
+    public final int id;
+    public final char direction;
 
     public static Command spawnShip() {
-        return new Command("g");
+        return SPAWN_SHIP;
     }
 
     public static Command transformShipIntoDropoffSite(final EntityId id) {
-        return new Command("c " + id);
+        return new Command(CONSTRUCT, id.id, ' ');
     }
 
     public static Command move(final EntityId id, final Direction direction) {
-        return new Command("m " + id + ' ' + direction.charValue);
+        return new Command(MOVE, id.id, direction.charValue);
+    }
+
+    private Command(final char type, final int id, final char direction) {
+        this.type = type;
+        this.id = id;
+        this.direction = direction;
     }
 
-    private Command(final String command) {
-        this.command = command;
+    void writeTo(final Output output) {
+        output.putChar(type);
+        if (type == SPAWN) {
+            return;
+        }
+
+        output.putChar(' ').putInt(id);
+        if (type == MOVE) {
+            output.putChar(' ').putChar(direction);
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case SPAWN: return String.valueOf(SPAWN);
+            case CONSTRUCT: return CONSTRUCT + " " + id;
+            default: return MOVE + " " + id + ' ' + direction;
+        }
     }
 
     @Override
@@ -24,13 +57,18 @@ public class Command {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Command command1 = (Command) o;
+        Command command = (Command) o;
 
-        return command.equals(command1.command);
+        if (type != command.type) return false;
+        if (id != command.id) return false;
+        return direction == command.direction;
     }
 
     @Override
     public int hashCode() {
-        return command.hashCode();
+        int result = type;
+        result = 31 * result + id;
+        result = 31 * result + direction;
+        return result;
     }
 }
@@ -0,0 +1,74 @@
+package hlt;
+
+import java.util.Arrays;
+
+// Distance from every cell to the nearest structure (shipyard or dropoff) of one
+// player, plus which structure that is. It is only rebuilt when the player's set
+// of dropoffs changes, so lookups are a single array read.
+public class DropoffDistances {
+    private final GameMap map;
+    private final int[] distance;
+    private final byte[] nearest;
+    private Entity[] structures = new Entity[0];
+
+    DropoffDistances(final GameMap map) {
+        this.map = map;
+        distance = new int[map.width * map.height];
+        nearest = new byte[map.width * map.height];
+    }
+
+    void update(final Player player) {
+        // Structures are never lost and their objects last the whole game, so
+        // nothing changes until a new dropoff appears.
+        final int count = 1 + player.dropoffs.size();
+        if (count == structures.length) {
+            return;
+        }
+
+        structures = new Entity[count];
+        int slot = 0;
+        structures[slot++] = player.shipyard;
+        for (final Dropoff dropoff : player.dropoffs.values()) {
+            structures[slot++] = dropoff;
+        }
+        rebuild();
+    }
+
+    public int distance(final int index) {
+        return distance[index];
+    }
+
+    public int distance(final Position position) {
+        return distance[map.index(position)];
+    }
+
+    public Entity nearest(final int index) {
+        return structures[nearest[index]];
+    }
+
+    public Entity nearest(final Position position) {
+        return structures[nearest[map.index(position)]];
+    }
+
+    private void rebuild() {
+        if (structures.length > Byte.MAX_VALUE) {
+            Log.log("Error: dropoff distances: too many structures (" + structures.length + ").");
+            throw new IllegalStateException();
+        }
+
+        Arrays.fill(distance, Integer.MAX_VALUE);
+
+        // The shipyard is considered first and a later dropoff only wins if it is
+        // strictly closer, matching the order getNearestDropoff has always used.
+        for (int slot = 0; slot < structures.length; ++slot) {
+            final int structureIndex = map.index(structures[slot].position);
+            for (int i = 0; i < distance.length; ++i) {
+                final int d = map.calculateDistance(i, structureIndex);
+                if (d < distance[i]) {
+                    distance[i] = d;
+                    nearest[i] = (byte) slot;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Chooses where a player's next dropoff should go and whether it is worth building.
+// Every cell is scored by the halite in the square of RADIUS around it, scaled by
+// the share of the ships in that square that are ours, among cells far enough from
+// our structures to shorten trips and far enough from the enemy's not to be
+// contested. Halite and ship counts are kept as summed-area tables over the wrapped
+// map, so a square is four table reads and the whole map is scored every turn in
+// O(cells); once the candidate sites are known (see restrictTo) only those are scored.
+public class DropoffPlanner {
+    public static final int RADIUS = 5;
+    // Ships there should be for every structure before another one is worth its cost.
+    public static final int SHIPS_PER_DROPOFF = 12;
+    // Of the halite around a site, how much ships can be expected to bring in over a full game.
+    private static final double HARVESTED_FRACTION = 0.5;
+
+    private final GameMap map;
+    private final int radius;
+    private final int minSpacing;
+    private final int maxSpacing;
+    private final int stride;
+    // table[y * stride + x] is the sum over cells [0, x) x [0, y).
+    private final long[] haliteTable;
+    private final long[] friendTable;
+    private final long[] enemyTable;
+    private final long[] friendCounts;
+    private final long[] enemyCounts;
+    // The cells bestSite considers, once MapPrecomputation has picked them; every cell until then.
+    private int[] sites;
+
+    DropoffPlanner(final GameMap map) {
+        this.map = map;
+        radius = Math.min(RADIUS, (Math.min(map.width, map.height) - 1) / 2);
+        minSpacing = Math.max(2 * radius, map.width / 4);
+        maxSpacing = Math.max(minSpacing + radius, map.width / 3);
+        stride = map.width + 1;
+        final int size = stride * (map.height + 1);
+        haliteTable = new long[size];
+        friendTable = new long[size];
+        enemyTable = new long[size];
+        friendCounts = new long[map.width * map.height];
+        enemyCounts = new long[map.width * map.height];
+    }
+
+    // The best site for me on this turn's map, or null when no cell qualifies.
+    public Position bestSite(final Player me, final List<Player> players) {
+        Arrays.fill(friendCounts, 0L);
+        Arrays.fill(enemyCounts, 0L);
+        for (final Player player : players) {
+            final long[] counts = player == me ? friendCounts : enemyCounts;
+            for (final Ship ship : player.ships.values()) {
+                ++counts[map.index(ship.position)];
+            }
+        }
+        build(haliteTable, null);
+        build(friendTable, friendCounts);
+        build(enemyTable, enemyCounts);
+
+        int bestIndex = -1;
+        double bestScore = 0;
+        final int count = sites == null ? map.width * map.height : sites.length;
+        for (int i = 0; i < count; ++i) {
+            final int index = sites == null ? i : sites[i];
+            if (!isCandidate(index, me, players)) {
+                continue;
+            }
+            final double score = score(index);
+            if (score > bestScore) {
+                bestScore = score;
+                bestIndex = index;
+            }
+        }
+        return bestIndex < 0 ? null : map.positionAt(bestIndex);
+    }
+
+    // Whether a dropoff at site, as scored by the last bestSite, would save more than
+    // it costs: ships mining around it cut the trip home from about the distance to
+    // our nearest structure plus the radius down to the radius, and that share of
+    // what they harvest there in the turns left is the saving.
+    public boolean paysOff(final Position site, final Player me, final List<Player> players, final int turnsLeft) {
+        final int index = map.index(site);
+        if (!isCandidate(index, me, players) || me.ships.size() < SHIPS_PER_DROPOFF * (1 + me.dropoffs.size())) {
+            return false;
+        }
+        final int toHome = map.dropoffDistances(me).distance(index);
+        if (turnsLeft < 2 * toHome + 2 * radius) {
+            return false;
+        }
+        final double harvested = score(index) * HARVESTED_FRACTION * Math.min(1.0, 2.0 * turnsLeft / Constants.MAX_TURNS);
+        final double saved = harvested * toHome / (toHome + radius);
+        return saved >= Constants.DROPOFF_COST;
+    }
+
+    // The ship that should turn into the dropoff: the closest, and of those the one
+    // carrying the most, since its cargo goes towards the cost.
+    public Ship builder(final Position site, final Player me) {
+        Ship best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (final Ship ship : me.ships.values()) {
+            final int distance = map.calculateDistance(ship.position, site);
+            if (distance < bestDistance || (distance == bestDistance && ship.halite > best.halite)) {
+                best = ship;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    // The halite within the radius of every cell on the map as it stands.
+    void haliteWindows(final int[] windows) {
+        build(haliteTable, null);
+        for (int index = 0; index < windows.length; ++index) {
+            windows[index] = (int) window(haliteTable, index % map.width, index / map.width);
+        }
+    }
+
+    // Limits bestSite to the given cells, e.g. the well-spaced rich clusters of the
+    // starting map; they are still scored on the map as it stands.
+    void restrictTo(final int[] sites) {
+        this.sites = sites;
+    }
+
+    // How close to a structure a site may be.
+    int minSpacing() {
+        return minSpacing;
+    }
+
+    private boolean isCandidate(final int index, final Player me, final List<Player> players) {
+        if (map.structureOwner[index] >= 0) {
+            return false;
+        }
+        final int toHome = map.dropoffDistances(me).distance(index);
+        if (toHome < minSpacing || toHome > maxSpacing) {
+            return false;
+        }
+        for (final Player player : players) {
+            if (player != me && map.dropoffDistances(player).distance(index) < minSpacing) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double score(final int index) {
+        final int x = index % map.width;
+        final int y = index / map.width;
+        final long friends = window(friendTable, x, y);
+        final long enemies = window(enemyTable, x, y);
+        return window(haliteTable, x, y) * (double) (friends + 1) / (friends + enemies + 1);
+    }
+
+    // Fills table with the summed-area table of counts, or of the map's halite when counts is null.
+    private void build(final long[] table, final long[] counts) {
+        Arrays.fill(table, 0, stride, 0L);
+        for (int y = 0; y < map.height; ++y) {
+            final int row = (y + 1) * stride;
+            table[row] = 0;
+            long rowSum = 0;
+            for (int x = 0; x < map.width; ++x) {
+                final int cell = y * map.width + x;
+                rowSum += counts == null ? map.halite[cell] : counts[cell];
+                table[row + x + 1] = table[row - stride + x + 1] + rowSum;
+            }
+        }
+    }
+
+    // Sum over the square of radius around (x, y), wrapping around the edges.
+    private long window(final long[] table, final int x, final int y) {
+        // Shifted by a whole map so that no corner is negative.
+        final int x0 = x - radius + map.width;
+        final int x1 = x + radius + 1 + map.width;
+        final int y0 = y - radius + map.height;
+        final int y1 = y + radius + 1 + map.height;
+        return wrappedSum(table, x1, y1) - wrappedSum(table, x0, y1) - wrappedSum(table, x1, y0) + wrappedSum(table, x0, y0);
+    }
+
+    // Sum over [0, x) x [0, y) of the map tiled in both directions, for x, y >= 0.
+    private long wrappedSum(final long[] table, final int x, final int y) {
+        final int wholeX = x / map.width;
+        final int restX = x % map.width;
+        final int wholeY = y / map.height;
+        final int restY = y % map.height;
+        return wholeX * wholeY * table[map.height * stride + map.width]
+                + wholeX * table[restY * stride + map.width]
+                + wholeY * table[map.height * stride + restX]
+                + table[restY * stride + restX];
+    }
+}
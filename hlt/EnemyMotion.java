@@ -0,0 +1,176 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Guesses where every enemy ship will be next turn from what it did between the
+// last two frames, as the expected number of enemy ships in each cell. A ship
+// that cannot pay to leave its cell stays. One that stayed and gained cargo is
+// mining and most likely stays on. One that is full, or carried its cargo a step
+// closer to its owner's nearest structure, is heading home and takes one of the
+// steps that get it there. Any other ship that moved most likely keeps going the
+// same way. A ship without a history (seen for the first time, or not seen in
+// the previous frame) could go anywhere, so it counts fully in all five cells,
+// as in avoiding every cell next to an enemy; the grid is then no longer a pure
+// expectation, but a fresh ship is never taken for a harmless one.
+//
+// Per-ship history and the five cells each ship contributes to are kept in arrays
+// indexed by entity id, so each frame only touches the cells around the enemy
+// ships: a ship's old contribution is taken out and its new one put in, and the
+// ships the frame reports destroyed are taken out for good.
+public class EnemyMotion {
+    // How likely a mining ship stays, a returning ship takes a step home, and a travelling ship keeps its heading.
+    private static final float MINING_STAY = 0.7f;
+    private static final float HOMEWARD = 0.8f;
+    private static final float KEEP_HEADING = 0.5f;
+    // How likely a ship that neither mines, heads home nor keeps its heading stays.
+    private static final float UNKNOWN_STAY = 0.2f;
+
+    private static final Direction[] OUTCOME_DIRECTIONS = Direction.values();
+    private static final int OUTCOMES = OUTCOME_DIRECTIONS.length;
+    private static final Direction[] CARDINALS = Direction.ALL_CARDINALS.toArray(new Direction[0]);
+
+    private final GameMap map;
+    private final float[] risk;
+    private int frame;
+
+    // Indexed by entity id; contributedCells/contributed by id * OUTCOMES + outcome.
+    private int[] lastCell = new int[0];
+    private int[] lastHalite = new int[0];
+    private int[] lastFrame = new int[0];
+    private int[] contributedCells = new int[0];
+    private float[] contributed = new float[0];
+
+    private final float[] odds = new float[OUTCOMES];
+
+    EnemyMotion(final GameMap map) {
+        this.map = map;
+        risk = new float[map.width * map.height];
+    }
+
+    // Expected number of enemy ships in index next turn, as of the last update,
+    // with ships that have no history counted in full.
+    public float risk(final int index) {
+        return risk[index];
+    }
+
+    // Takes in this turn's frame; Game.updateFrame calls it once per frame.
+    public void update(final Player me, final List<Player> players) {
+        ++frame;
+        for (final Player player : players) {
+            if (player.id.equals(me.id)) {
+                continue;
+            }
+            for (final Ship ship : player.destroyed) {
+                if (ship.id.id < lastFrame.length) {
+                    withdraw(ship.id.id);
+                    lastFrame[ship.id.id] = 0;
+                }
+            }
+
+            final DropoffDistances home = map.dropoffDistances(player);
+            for (final Ship ship : player.ships.values()) {
+                final int id = ship.id.id;
+                ensureCapacity(id);
+                withdraw(id);
+
+                final int cell = map.index(ship.position);
+                predict(ship, cell, home, lastFrame[id] == frame - 1);
+                for (int outcome = 0; outcome < OUTCOMES; ++outcome) {
+                    final int target = map.neighbor(cell, OUTCOME_DIRECTIONS[outcome]);
+                    contributedCells[id * OUTCOMES + outcome] = target;
+                    contributed[id * OUTCOMES + outcome] = odds[outcome];
+                    risk[target] += odds[outcome];
+                }
+
+                lastCell[id] = cell;
+                lastHalite[id] = ship.halite;
+                lastFrame[id] = frame;
+            }
+        }
+    }
+
+    // Fills odds, indexed by Direction ordinal, for where the ship goes next
+    // (all ones for a ship without a history).
+    private void predict(final Ship ship, final int cell, final DropoffDistances home, final boolean seenLastFrame) {
+        Arrays.fill(odds, 0f);
+        final int still = Direction.STILL.ordinal();
+        if (ship.halite < map.halite[cell] / Constants.MOVE_COST_RATIO) {
+            odds[still] = 1f;
+            return;
+        }
+        if (!seenLastFrame) {
+            Arrays.fill(odds, 1f);
+            return;
+        }
+
+        final int id = ship.id.id;
+        final int previous = lastCell[id];
+        if (previous == cell && ship.halite > lastHalite[id] && !ship.isFull()) {
+            spread(MINING_STAY, 1f - MINING_STAY);
+            return;
+        }
+
+        final int toHome = home.distance(cell);
+        if (toHome > 0 && ship.halite > 0
+                && (ship.isFull() || (previous != cell && toHome < home.distance(previous) && ship.halite <= lastHalite[id]))) {
+            int homeward = 0;
+            for (final Direction direction : CARDINALS) {
+                if (home.distance(map.neighbor(cell, direction)) < toHome) {
+                    ++homeward;
+                }
+            }
+            final float stay = (1f - HOMEWARD) / 2;
+            spread(stay, 1f - HOMEWARD - stay);
+            for (final Direction direction : CARDINALS) {
+                if (home.distance(map.neighbor(cell, direction)) < toHome) {
+                    odds[direction.ordinal()] += HOMEWARD / homeward;
+                }
+            }
+            return;
+        }
+
+        if (previous != cell) {
+            for (final Direction direction : CARDINALS) {
+                if (map.neighbor(previous, direction) == cell) {
+                    spread(UNKNOWN_STAY * (1f - KEEP_HEADING), (1f - UNKNOWN_STAY) * (1f - KEEP_HEADING));
+                    odds[direction.ordinal()] += KEEP_HEADING;
+                    return;
+                }
+            }
+        }
+        spread(UNKNOWN_STAY, 1f - UNKNOWN_STAY);
+    }
+
+    // Adds stay to STILL and moving evenly over the four steps.
+    private void spread(final float stay, final float moving) {
+        odds[Direction.STILL.ordinal()] += stay;
+        for (final Direction direction : CARDINALS) {
+            odds[direction.ordinal()] += moving / CARDINALS.length;
+        }
+    }
+
+    private void withdraw(final int id) {
+        for (int outcome = 0; outcome < OUTCOMES; ++outcome) {
+            final float amount = contributed[id * OUTCOMES + outcome];
+            if (amount != 0f) {
+                final int target = contributedCells[id * OUTCOMES + outcome];
+                // clamp away float drift so an empty cell reads as exactly zero risk
+                risk[target] = Math.max(0f, risk[target] - amount);
+                contributed[id * OUTCOMES + outcome] = 0f;
+            }
+        }
+    }
+
+    private void ensureCapacity(final int id) {
+        if (id < lastCell.length) {
+            return;
+        }
+        final int capacity = Math.max(64, Integer.highestOneBit(id) * 2);
+        lastCell = Arrays.copyOf(lastCell, capacity);
+        lastHalite = Arrays.copyOf(lastHalite, capacity);
+        lastFrame = Arrays.copyOf(lastFrame, capacity);
+        contributedCells = Arrays.copyOf(contributedCells, capacity * OUTCOMES);
+        contributed = Arrays.copyOf(contributed, capacity * OUTCOMES);
+    }
+}
@@ -3,7 +3,9 @@ package hlt;
 public class Entity {
     public final PlayerId owner;
     public final EntityId id;
-    public final Position position;
+    // Ships are kept from frame to frame (see Player), so theirs changes as they move;
+    // structures never move.
+    public Position position;
 
     public Entity(final PlayerId owner, final EntityId id, final Position position) {
         this.owner = owner;
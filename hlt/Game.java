@@ -9,62 +9,96 @@ public class Game {
     public final ArrayList<Player> players = new ArrayList<>();
     public final Player me;
     public final GameMap gameMap;
+    public final TurnClock clock = new TurnClock(TurnClock.TURN_BUDGET_MILLIS);
+    public final TurnMetrics metrics = new TurnMetrics();
+
+    private final Input input;
+    private final Output output;
 
     public Game() {
-        Constants.populateConstants(Input.readLine());
+        this(Input.fromStdin(), Output.toStdout());
+        Log.open(myId.id);
+        // Only the phase percentiles in the bot log; -Dhlt.metrics=trace adds the per-turn CSV.
+        metrics.open(myId.id, TurnMetrics.Mode.SUMMARY);
+    }
+
+    // Plays over the given streams instead of stdin/stdout, e.g. inside a local simulation.
+    public Game(final Input input, final Output output) {
+        this.input = input;
+        this.output = output;
+        Constants.populateConstants(input.readLine());
 
-        final Input input = Input.readInput();
         final int numPlayers = input.getInt();
         myId = new PlayerId(input.getInt());
 
-        Log.open(myId.id);
-
         for (int i = 0; i < numPlayers; ++i) {
-            players.add(Player._generate());
+            players.add(Player._generate(input));
         }
         me = players.get(myId.id);
-        gameMap = GameMap._generate();
+        gameMap = GameMap._generate(input);
+        // the shipyards were read before the map, so they only now get its Positions
+        for (final Player player : players) {
+            player.shipyard.position = gameMap.positionAt(gameMap.index(player.shipyard.position));
+        }
     }
 
     public void ready(final String name) {
-        System.out.println(name);
+        output.putString(name).putChar('\n').flush();
     }
 
     public void updateFrame() {
-        turnNumber = Input.readInput().getInt();
+        turnNumber = input.getInt();
+        // Timing starts once the frame has arrived, so waiting on the engine is not counted.
+        metrics.startTurn(turnNumber);
+        metrics.begin("turn");
+        metrics.begin("parse");
         Log.log("=============== TURN " + turnNumber + " ================");
 
         for (int i = 0; i < players.size(); ++i) {
-            final Input input = Input.readInput();
-
             final PlayerId currentPlayerId = new PlayerId(input.getInt());
             final int numShips = input.getInt();
             final int numDropoffs = input.getInt();
             final int halite = input.getInt();
 
-            players.get(currentPlayerId.id)._update(numShips, numDropoffs, halite);
+            players.get(currentPlayerId.id)._update(input, gameMap, numShips, numDropoffs, halite);
         }
 
-        gameMap._update();
+        gameMap._update(input);
 
         for (final Player player : players) {
             for (final Ship ship : player.ships.values()) {
                 gameMap.at(ship).markUnsafe(ship);
             }
 
-            gameMap.at(player.shipyard).structure = player.shipyard;
+            gameMap.at(player.shipyard).setStructure(player.shipyard);
 
             for (final Dropoff dropoff : player.dropoffs.values()) {
-                gameMap.at(dropoff).structure = dropoff;
+                gameMap.at(dropoff).setStructure(dropoff);
             }
+
+            gameMap.updateDropoffDistances(player);
         }
+
+        // Here rather than in the bot's planning, which may be cut short, because
+        // the model has to see every frame's spawns and losses exactly once.
+        gameMap.enemyMotion().update(me, players);
+
+        metrics.end("parse");
+        clock.start();
     }
 
     public void endTurn(final Collection<Command> commands) {
+        metrics.begin("output");
         for (final Command command : commands) {
-            System.out.print(command.command);
-            System.out.print(' ');
+            command.writeTo(output);
+            output.putChar(' ');
+        }
+        output.putChar('\n').flush();
+        metrics.end("output");
+        metrics.end("turn");
+
+        if (turnNumber >= Constants.MAX_TURNS) {
+            metrics.write();
         }
-        System.out.println();
     }
 }
@@ -6,44 +6,270 @@ import java.util.*;
 public class GameMap {
     public final int width;
     public final int height;
-    public final MapCell[][] cells;
+
+    // Cell state is kept as flat arrays indexed by y * width + x so that
+    // whole-map scans are linear sweeps. MapCell is only a view onto these.
+    // Halite and inspiration changes go through setHalite/setInspired so the
+    // value index stays current.
+    public final int[] halite;
+    public final short[] occupantId;
+    public final byte[] structureOwner;
+    public final BitSet inspired;
+
+    private final MapCell[] cells;
+    private final Entity[] structures;
+
+    // neighbors[index * DIRECTION_COUNT + direction.ordinal()] is the normalized
+    // index of the cell one step from index in that direction.
+    private static final int DIRECTION_COUNT = Direction.values().length;
+    private final int[] neighbors;
+
+    // Distance tables: the column and row of every index, and wrapX[dx + width - 1]
+    // (wrapY likewise) the distance along one axis for a difference of dx, so a
+    // toroidal distance needs no division.
+    private final short[] columnOf;
+    private final short[] rowOf;
+    private final byte[] wrapX;
+    private final byte[] wrapY;
+
+    private final HaliteIndex haliteIndex;
+    private final InspirationField inspirationField;
+    private final BitSet inspirationScratch;
+    private MiningPlanner miningPlanner;
+    private PathFinder pathFinder;
+    private DropoffPlanner dropoffPlanner;
+    private EnemyMotion enemyMotion;
+    private long totalHalite;
+    private DropoffDistances[] dropoffDistances = new DropoffDistances[0];
+    private final MoveResolver moveResolver;
+    private boolean frozen;
+    private Ship[] shipsById = new Ship[256];
 
     public GameMap(final int width, final int height) {
         this.width = width;
         this.height = height;
 
-        cells = new MapCell[height][];
+        final int size = width * height;
+        halite = new int[size];
+        occupantId = new short[size];
+        structureOwner = new byte[size];
+        inspired = new BitSet(size);
+        structures = new Entity[size];
+        Arrays.fill(occupantId, (short) -1);
+        Arrays.fill(structureOwner, (byte) -1);
+
+        cells = new MapCell[size];
+        neighbors = new int[size * DIRECTION_COUNT];
+        columnOf = new short[size];
+        rowOf = new short[size];
+        wrapX = axisDistances(width);
+        wrapY = axisDistances(height);
         for (int y = 0; y < height; ++y) {
-            cells[y] = new MapCell[width];
+            for (int x = 0; x < width; ++x) {
+                final int index = index(x, y);
+                columnOf[index] = (short) x;
+                rowOf[index] = (short) y;
+                cells[index] = new MapCell(this, new Position(x, y), index);
+
+                final int base = index * DIRECTION_COUNT;
+                neighbors[base + Direction.NORTH.ordinal()] = index(x, y - 1);
+                neighbors[base + Direction.SOUTH.ordinal()] = index(x, y + 1);
+                neighbors[base + Direction.EAST.ordinal()] = index(x + 1, y);
+                neighbors[base + Direction.WEST.ordinal()] = index(x - 1, y);
+                neighbors[base + Direction.STILL.ordinal()] = index;
+            }
+        }
+
+        haliteIndex = new HaliteIndex(this);
+        inspirationField = new InspirationField(width, height);
+        inspirationScratch = new BitSet(size);
+        moveResolver = new MoveResolver(this);
+    }
+
+    private static byte[] axisDistances(final int length) {
+        final byte[] distances = new byte[2 * length - 1];
+        for (int d = -(length - 1); d < length; ++d) {
+            distances[d + length - 1] = (byte) Math.min(Math.abs(d), length - Math.abs(d));
         }
+        return distances;
+    }
+
+    public int index(final int x, final int y) {
+        return (((y % height) + height) % height) * width + (((x % width) + width) % width);
+    }
+
+    public int index(final Position position) {
+        return index(position.x, position.y);
+    }
+
+    public int neighbor(final int index, final Direction direction) {
+        return neighbors[index * DIRECTION_COUNT + direction.ordinal()];
+    }
+
+    // The shared, normalized Position instance for a cell index.
+    public Position positionAt(final int index) {
+        return cells[index].position;
+    }
+
+    public Position offset(final Position position, final Direction direction) {
+        return positionAt(neighbor(index(position), direction));
     }
 
     public MapCell at(final Position position) {
-        final Position normalized = normalize(position);
-        return cells[normalized.y][normalized.x];
+        return cells[index(position)];
     }
 
     public MapCell at(final Entity entity) {
         return at(entity.position);
     }
 
-    public int calculateDistance(final Position source, final Position target) {
-        final Position normalizedSource = normalize(source);
-        final Position normalizedTarget = normalize(target);
+    public MapCell at(final int index) {
+        return cells[index];
+    }
+
+    // Marks the map as this turn's read-only snapshot. Until the next frame is read,
+    // reservations have to go through an overlay() instead of the map itself.
+    public void freeze() {
+        haliteIndex.refresh();
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public MapOverlay overlay() {
+        return new MapOverlay(this, null);
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            Log.log("Error: map: tried to modify the frozen turn snapshot; use an overlay instead.");
+            throw new IllegalStateException();
+        }
+    }
+
+    public void setHalite(final int index, final int amount) {
+        checkMutable();
+        final int oldEffective = haliteIndex.effectiveHalite(index);
+        totalHalite += amount - halite[index];
+        halite[index] = amount;
+        haliteIndex.update(index, oldEffective);
+    }
+
+    // Brings lazily maintained indexes up to date so that the read-only queries
+    // (highestValueLocation, distances, getUnsafeMoves) can run on several threads.
+    public void prepareConcurrentReads() {
+        haliteIndex.refresh();
+        miningPlanner();
+        pathFinder();
+    }
+
+    // Start-of-game work, meant for before game.ready while the turn clock is not
+    // running: builds the structures that are otherwise made on first use, and the
+    // MapPrecomputation for this map, whose candidate sites the DropoffPlanner then
+    // limits itself to.
+    public MapPrecomputation precompute(final List<Player> players) {
+        prepareConcurrentReads();
+        dropoffPlanner();
+        for (final Player player : players) {
+            dropoffDistances(player);
+        }
+        final MapPrecomputation precomputed = MapPrecomputation.compute(this, players);
+        dropoffPlanner().restrictTo(precomputed.candidateSites);
+        return precomputed;
+    }
+
+    public PathFinder pathFinder() {
+        if (pathFinder == null) {
+            pathFinder = new PathFinder(this);
+        }
+        return pathFinder;
+    }
+
+    public long totalHalite() {
+        return totalHalite;
+    }
+
+    // Built on first use, once the game constants are known.
+    public MiningPlanner miningPlanner() {
+        if (miningPlanner == null) {
+            miningPlanner = new MiningPlanner(this);
+        }
+        return miningPlanner;
+    }
+
+    public void setInspired(final int index, final boolean value) {
+        checkMutable();
+        final int oldEffective = haliteIndex.effectiveHalite(index);
+        inspired.set(index, value);
+        haliteIndex.update(index, oldEffective);
+    }
+
+    // Sets inspired on every cell from where the enemy ships of me are this turn.
+    public void updateInspiration(final Player me, final List<Player> players) {
+        checkMutable();
+        inspirationField.compute(me, players, inspirationScratch);
+        for (int index = 0; index < halite.length; ++index) {
+            if (inspirationScratch.get(index) != inspired.get(index)) {
+                setInspired(index, inspirationScratch.get(index));
+            }
+        }
+    }
+
+    public boolean isOccupied(final int index) {
+        return occupantId[index] >= 0;
+    }
 
-        final int dx = Math.abs(normalizedSource.x - normalizedTarget.x);
-        final int dy = Math.abs(normalizedSource.y - normalizedTarget.y);
+    public Ship shipAt(final int index) {
+        final int id = occupantId[index];
+        return id < 0 ? null : shipsById[id];
+    }
+
+    public void markUnsafe(final int index, final Ship ship) {
+        checkMutable();
+        final int id = ship.id.id;
+        if (id > Short.MAX_VALUE) {
+            Log.log("Error: map: ship id " + id + " does not fit the occupant table.");
+            throw new IllegalStateException();
+        }
+        if (id >= shipsById.length) {
+            shipsById = Arrays.copyOf(shipsById, Math.max(id + 1, shipsById.length * 2));
+        }
+        shipsById[id] = ship;
+        occupantId[index] = (short) id;
+    }
+
+    public void markSafe(final int index) {
+        checkMutable();
+        occupantId[index] = -1;
+    }
+
+    public boolean hasStructure(final int index) {
+        return structureOwner[index] >= 0;
+    }
+
+    public Entity structureAt(final int index) {
+        return structures[index];
+    }
+
+    public void setStructure(final int index, final Entity structure) {
+        checkMutable();
+        structures[index] = structure;
+        structureOwner[index] = structure == null ? -1 : (byte) structure.owner.id;
+    }
 
-        final int toroidal_dx = Math.min(dx, width - dx);
-        final int toroidal_dy = Math.min(dy, height - dy);
+    public int calculateDistance(final Position source, final Position target) {
+        return calculateDistance(index(source), index(target));
+    }
 
-        return toroidal_dx + toroidal_dy;
+    public int calculateDistance(final int sourceIndex, final int targetIndex) {
+        return wrapX[columnOf[sourceIndex] - columnOf[targetIndex] + width - 1]
+                + wrapY[rowOf[sourceIndex] - rowOf[targetIndex] + height - 1];
     }
 
     public Position normalize(final Position position) {
-        final int x = ((position.x % width) + width) % width;
-        final int y = ((position.y % height) + height) % height;
-        return new Position(x, y);
+        return positionAt(index(position));
     }
 
     public ArrayList<Direction> getUnsafeMoves(final Position source, final Position destination) {
@@ -74,12 +300,12 @@ public class GameMap {
 
     public Direction naiveNavigate(final Ship ship, final Position destination) {
         // getUnsafeMoves normalizes for us
-        if (!(ship.halite >= at(ship).halite/Constants.MOVE_COST_RATIO)) {
+        if (!(ship.halite >= halite[index(ship.position)]/Constants.MOVE_COST_RATIO)) {
             return Direction.STILL;
         }
 
         for (final Direction direction : getUnsafeMoves(ship.position, destination)) {
-            final Position targetPos = ship.position.directionalOffset(direction);
+            final Position targetPos = offset(ship.position, direction);
             if (!at(targetPos).isOccupied()) {
                 at(targetPos).markUnsafe(ship);
                 at(ship).markSafe();
@@ -91,97 +317,108 @@ public class GameMap {
         return Direction.STILL;
     }
 
-    void _update() {
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                cells[y][x].ship = null;
-            }
-        }
+    void _update(final Input input) {
+        frozen = false;
+        Arrays.fill(occupantId, (short) -1);
 
-        final int updateCount = Input.readInput().getInt();
+        final int updateCount = input.getInt();
 
         for (int i = 0; i < updateCount; ++i) {
-            final Input input = Input.readInput();
             final int x = input.getInt();
             final int y = input.getInt();
 
-            cells[y][x].halite = input.getInt();
+            setHalite(index(x, y), input.getInt());
         }
     }
 
-    static GameMap _generate() {
-        final Input mapInput = Input.readInput();
-        final int width = mapInput.getInt();
-        final int height = mapInput.getInt();
+    static GameMap _generate(final Input input) {
+        final int width = input.getInt();
+        final int height = input.getInt();
 
         final GameMap map = new GameMap(width, height);
 
         for (int y = 0; y < height; ++y) {
-            final Input rowInput = Input.readInput();
-
             for (int x = 0; x < width; ++x) {
-                final int halite = rowInput.getInt();
-                map.cells[y][x] = new MapCell(new Position(x, y), halite);
+                final int halite = input.getInt();
+                map.halite[map.index(x, y)] = halite;
+                map.totalHalite += halite;
             }
         }
+        map.haliteIndex.invalidate();
 
         return map;
     }
 
+    // Settles the candidate moves of every ship in shipsToMove in one pass, adding a
+    // move or stay command for each of them. Swaps and longer cycles of ships moving
+    // into each other's cells are allowed.
+    public ArrayList<Command> resolveMoves(final List<Ship> shipsToMove, final ArrayList<Command> commands) {
+        final MapOverlay reservations = overlay();
+        resolveMoves(reservations, shipsToMove, commands);
+        reservations.commit();
+        return commands;
+    }
+
+    // As above, but the reservations are recorded in the given overlay and the map is left untouched.
+    public ArrayList<Command> resolveMoves(final MapOverlay reservations, final List<Ship> shipsToMove, final ArrayList<Command> commands) {
+        moveResolver.resolve(reservations, shipsToMove, commands);
+        return commands;
+    }
+
     /*
-    While ArrayList of ships with actions to choose is not empty, call newNavigate on ship at index 0
+    Put the ids of the ships with actions to choose in an IntSet, then call newNavigate on every ship, in order, whose id is still in it
 
     If there is a conflict
 
     i could return an array of commands and append it to command queue*/
 
-   public ArrayList<Command> newNavigate(Ship ship, ArrayList<Ship> shipsToMove, ArrayList<Command> commands) {
+   public ArrayList<Command> newNavigate(Ship ship, IntSet shipsToMove, ArrayList<Command> commands) {
        //while ship.moves.isntEmpty
        //do all the same stuff, but add a section saying "if ship.moves at collision contains opposite direction, swap"
 //        for (final Direction direction : ship.moves) {
-       Log.log("Movement for Ship: "+ship.id);
+       Log.debug(() -> "Movement for Ship: "+ship.id);
        while( !(ship.moves.isEmpty()) ) {
-            final Position targetPos = ship.position.directionalOffset(ship.moves.get(0));
+            final Position targetPos = offset(ship.position, ship.moves.get(0));
 
             if (at(targetPos).isOccupied()) {
-                Log.log("Target position is occupied,");
-                if (at(targetPos).ship.owner == ship.owner &&
-                        shipsToMove.contains(at(targetPos).ship)){
-                    Log.log("the ship is mine and still needs to move,");
-                    if (at(targetPos).ship.visited) {
-                        Log.log("and the ship has been visited.");
-                        Direction oppositeDir = canSwap(ship.moves.get(0), at(targetPos).ship.moves);
+                Log.debug("Target position is occupied,");
+                if (at(targetPos).ship().owner == ship.owner &&
+                        shipsToMove.contains(at(targetPos).ship().id.id)){
+                    Log.debug("the ship is mine and still needs to move,");
+                    if (at(targetPos).ship().visited) {
+                        Log.debug("and the ship has been visited.");
+                        Direction oppositeDir = canSwap(ship.moves.get(0), at(targetPos).ship().moves);
                         if (oppositeDir != null) {
-                            Log.log("Ship Dir: " + ship.moves.get(0) + " Other Ship Dir: " + oppositeDir);
+                            Log.debug(() -> "Ship Dir: " + ship.moves.get(0) + " Other Ship Dir: " + oppositeDir);
                             commands.add(ship.move(ship.moves.get(0)));
-                            commands.add(at(targetPos).ship.move(oppositeDir));
-                            shipsToMove.remove(ship);
-                            shipsToMove.remove(at(targetPos).ship);
+                            commands.add(at(targetPos).ship().move(oppositeDir));
+                            shipsToMove.remove(ship.id.id);
+                            shipsToMove.remove(at(targetPos).ship().id.id);
                             ship.moves.clear();
-                            at(targetPos).ship.moves.clear();
+                            at(targetPos).ship().moves.clear();
                             return commands;
                         }
                     } else {
-                        Log.log("and the ship has NOT been visited.");
+                        Log.debug("and the ship has NOT been visited.");
                         ship.visited = true;
-                        commands = newNavigate(at(targetPos).ship, shipsToMove, commands);
+                        commands = newNavigate(at(targetPos).ship(), shipsToMove, commands);
                     }
                 }
                 if (!(ship.moves.isEmpty()))
                     ship.moves.remove(0);
             } else {
-                Log.log("The target position is not occupied.");
+                Log.debug("The target position is not occupied.");
                 at(targetPos).markUnsafe(ship);
                 at(ship).markSafe();
-                shipsToMove.remove(ship);
+                shipsToMove.remove(ship.id.id);
                 commands.add(ship.move(ship.moves.get(0)));
                 ship.moves.clear();
                 return commands;
             }
         }
-        if(shipsToMove.contains(ship)) {
-            Log.log("The ship is staying still.");
-            shipsToMove.remove(ship);
+        if(shipsToMove.contains(ship.id.id)) {
+            Log.debug("The ship is staying still.");
+            shipsToMove.remove(ship.id.id);
             ship.moves.clear();
             commands.add(ship.stayStill());
         }
@@ -208,23 +445,30 @@ public class GameMap {
     }
 
     public boolean canMove(Ship ship) {
-       if(ship.halite >= at(ship).halite/Constants.MOVE_COST_RATIO)
+       if(ship.halite >= halite[index(ship.position)]/Constants.MOVE_COST_RATIO)
            return true;
        return false;
     }
 
 
     public Direction crashNavigate(final Ship ship, final Position destination) {
+        final MapOverlay reservations = overlay();
+        final Direction direction = crashNavigate(reservations, ship, destination);
+        reservations.commit();
+        return direction;
+    }
+
+    public Direction crashNavigate(final MapOverlay reservations, final Ship ship, final Position destination) {
         // getUnsafeMoves normalizes for us
-        if (!(ship.halite >= at(ship).halite/Constants.MOVE_COST_RATIO)) {
+        if (!(ship.halite >= halite[index(ship.position)]/Constants.MOVE_COST_RATIO)) {
             return Direction.STILL;
         }
 
         for (final Direction direction : getUnsafeMoves(ship.position, destination)) {
-            final Position targetPos = ship.position.directionalOffset(direction);
-            if (!at(targetPos).isOccupied() || at(targetPos).hasStructure()) {
-                at(targetPos).markUnsafe(ship);
-                at(ship).markSafe();
+            final Position targetPos = offset(ship.position, direction);
+            if (!reservations.isOccupied(targetPos) || at(targetPos).hasStructure()) {
+                reservations.markUnsafe(targetPos, ship);
+                reservations.markSafe(ship.position);
                 return direction;
             }
         }
@@ -233,19 +477,35 @@ public class GameMap {
     }
 
     public Entity getNearestDropoff(Ship ship, Player me) {
-        Entity nearestDrop = me.shipyard;
-        for (Dropoff dropoff: me.dropoffs.values())
-            if (calculateDistance(ship.position, dropoff.position) < calculateDistance(ship.position, nearestDrop.position))
-                nearestDrop = dropoff;
-        return nearestDrop;
+        return dropoffDistances(me).nearest(ship.position);
+    }
+
+    public DropoffDistances dropoffDistances(final Player player) {
+        final int id = player.id.id;
+        if (id >= dropoffDistances.length) {
+            dropoffDistances = Arrays.copyOf(dropoffDistances, id + 1);
+        }
+        if (dropoffDistances[id] == null) {
+            dropoffDistances[id] = new DropoffDistances(this);
+            dropoffDistances[id].update(player);
+        }
+        return dropoffDistances[id];
+    }
+
+    void updateDropoffDistances(final Player player) {
+        dropoffDistances(player).update(player);
+    }
+
+    public DropoffPlanner dropoffPlanner() {
+        if (dropoffPlanner == null) {
+            dropoffPlanner = new DropoffPlanner(this);
+        }
+        return dropoffPlanner;
     }
 
-    public Position bestDropoffLocation() {
-        //TODO
-        //int value;
-        //Position ??
-        //tempVal =
-        return null;
+    // Where me should build its next dropoff on this turn's map, or null when no cell qualifies.
+    public Position bestDropoffLocation(final Player me, final List<Player> players) {
+        return dropoffPlanner().bestSite(me, players);
     }
 
     public void markEnemyShips(Player me, ArrayList<Player> enemies) {
@@ -253,41 +513,49 @@ public class GameMap {
             if (me.id == enemy.id)
                 continue;
             else
-                for (Ship ship : enemy.ships.values())
-                    for (Position position : ship.position.getSurroundingCardinals())
-                        at(position).markUnsafe(ship);
+                for (Ship ship : enemy.ships.values()) {
+                    final int shipIndex = index(ship.position);
+                    for (final Direction direction : Direction.ALL_CARDINALS)
+                        markUnsafe(neighbor(shipIndex, direction), ship);
+                }
         }
     }
 
-    public Position highestValueLocation(Ship ship, Player me) {
-        int bestVal = ((at(ship).halite/Constants.EXTRACT_RATIO)+(at(ship).halite/Constants.MOVE_COST_RATIO))*6;
-        Position bestPosition = ship.position;
-        int bestDistance = (this.height+this.width)/2;
-        //for every position in the map
-        for (int x = 0; x < this.width; ++x)
-            for (int y = 0; y < this.height; ++y) {
-                Position tempPosition = new Position(x,y);
-                if( tempPosition.equals(ship.position) )
-                    continue;
-
-                int tempVal;
-                int tempDistance = bestDistance = this.calculateDistance(ship.position, tempPosition);
-                int totalDistance = this.calculateDistance(ship.position, tempPosition) /*+
-                        this.calculateDistance(tempPosition, getNearestDropoff(ship, me).position)*/;
-
-                //if position is inspired use inspired extraction ratio
-                if (this.at(tempPosition).inspired)
-                    tempVal = this.at(tempPosition).halite/totalDistance*2;
-                else
-                    tempVal = this.at(tempPosition).halite/totalDistance;
-
-                //assign temp vars to best vars if better than best
-                if (tempVal >= bestVal) {
-                    bestVal = tempVal;
-                    bestPosition = tempPosition;
-                    bestDistance = this.calculateDistance(ship.position, bestPosition);
+    public EnemyMotion enemyMotion() {
+        if (enemyMotion == null) {
+            enemyMotion = new EnemyMotion(this);
+        }
+        return enemyMotion;
+    }
+
+    // Like markEnemyShips, but only marks the cells next to enemy ships where the
+    // EnemyMotion model expects at least riskThreshold enemy ships next turn.
+    // Game.updateFrame has already given the model this turn's frame.
+    public void markEnemyShips(final Player me, final List<Player> players, final float riskThreshold) {
+        final EnemyMotion motion = enemyMotion();
+        for (final Player enemy : players) {
+            if (enemy.id.equals(me.id)) {
+                continue;
+            }
+            for (final Ship ship : enemy.ships.values()) {
+                final int shipIndex = index(ship.position);
+                for (final Direction direction : Direction.ALL_CARDINALS) {
+                    final int next = neighbor(shipIndex, direction);
+                    if (motion.risk(next) >= riskThreshold) {
+                        markUnsafe(next, ship);
+                    }
                 }
             }
-        return bestPosition;
+        }
+    }
+
+    public Position highestValueLocation(Ship ship, Player me) {
+        final int shipIndex = index(ship.position);
+        final int stayVal = ((halite[shipIndex]/Constants.EXTRACT_RATIO)+(halite[shipIndex]/Constants.MOVE_COST_RATIO))*6;
+
+        // scores every other cell as halite / distance (doubled when inspired), but lets the
+        // value index skip the parts of the map that cannot beat the best cell seen so far
+        final int bestIndex = haliteIndex.bestTarget(shipIndex, stayVal);
+        return bestIndex == shipIndex ? ship.position : positionAt(bestIndex);
     }
 }
@@ -0,0 +1,159 @@
+package hlt;
+
+import java.util.Arrays;
+
+// Tracks the best effective halite (doubled when the cell is inspired) of each
+// BLOCK_SIZE x BLOCK_SIZE block of the map. It is kept current from the cells that
+// change each turn, so a target search only has to scan the blocks that could
+// still beat the best cell found so far.
+class HaliteIndex {
+    static final int BLOCK_SIZE = 8;
+
+    private final GameMap map;
+    private final int blocksX;
+    private final int blocksY;
+    private final int[] blockMax;
+    private final boolean[] dirty;
+    // Per-thread scratch so several ships can be searched at once after refresh().
+    private final ThreadLocal<int[]> bounds;
+
+    HaliteIndex(final GameMap map) {
+        this.map = map;
+        blocksX = (map.width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocksY = (map.height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockMax = new int[blocksX * blocksY];
+        dirty = new boolean[blocksX * blocksY];
+        bounds = ThreadLocal.withInitial(() -> new int[blocksX * blocksY]);
+        Arrays.fill(dirty, true);
+    }
+
+    int effectiveHalite(final int index) {
+        final int halite = map.halite[index];
+        return map.inspired.get(index) ? halite * 2 : halite;
+    }
+
+    // Called after the cell at index changed; oldEffective is its effective halite before the change.
+    void update(final int index, final int oldEffective) {
+        final int block = blockOf(index);
+        if (dirty[block]) {
+            return;
+        }
+
+        final int effective = effectiveHalite(index);
+        if (effective >= blockMax[block]) {
+            blockMax[block] = effective;
+        } else if (oldEffective == blockMax[block]) {
+            // The maximum may have dropped; rescan the block the next time it is needed.
+            dirty[block] = true;
+        }
+    }
+
+    void invalidate() {
+        Arrays.fill(dirty, true);
+    }
+
+    // Rescans every dirty block now, after which bestTarget only reads shared state.
+    void refresh() {
+        for (int block = 0; block < blockMax.length; ++block) {
+            blockMax(block);
+        }
+    }
+
+    // Returns the index of the cell with the highest halite / distance score as seen
+    // from shipIndex, or shipIndex itself if nothing reaches stayValue. Ties are broken
+    // toward the largest x, then the largest y.
+    int bestTarget(final int shipIndex, final int stayValue) {
+        final int width = map.width;
+        final int shipX = shipIndex % width;
+        final int shipY = shipIndex / width;
+        final int[] bounds = this.bounds.get();
+
+        for (int block = 0; block < bounds.length; ++block) {
+            bounds[block] = blockMax(block) / Math.max(1, minDistance(block, shipX, shipY));
+        }
+
+        int bestVal = stayValue;
+        int bestIndex = shipIndex;
+        int bestX = -1;
+        int bestY = -1;
+
+        for (;;) {
+            int next = -1;
+            for (int block = 0; block < bounds.length; ++block) {
+                if (bounds[block] >= 0 && (next < 0 || bounds[block] > bounds[next])) {
+                    next = block;
+                }
+            }
+            if (next < 0 || bounds[next] < bestVal) {
+                break;
+            }
+            bounds[next] = -1;
+
+            final int x0 = (next % blocksX) * BLOCK_SIZE;
+            final int y0 = (next / blocksX) * BLOCK_SIZE;
+            final int x1 = Math.min(x0 + BLOCK_SIZE, width);
+            final int y1 = Math.min(y0 + BLOCK_SIZE, map.height);
+
+            for (int y = y0; y < y1; ++y) {
+                for (int x = x0, i = y * width + x0; x < x1; ++x, ++i) {
+                    if (i == shipIndex) {
+                        continue;
+                    }
+
+                    final int distance = axisDistance(shipX, x, width) + axisDistance(shipY, y, map.height);
+                    final int value = map.inspired.get(i) ? map.halite[i] / distance * 2 : map.halite[i] / distance;
+
+                    if (value > bestVal || (value == bestVal && (x > bestX || (x == bestX && y > bestY)))) {
+                        bestVal = value;
+                        bestIndex = i;
+                        bestX = x;
+                        bestY = y;
+                    }
+                }
+            }
+        }
+
+        return bestIndex;
+    }
+
+    private int blockOf(final int index) {
+        final int x = index % map.width;
+        final int y = index / map.width;
+        return (y / BLOCK_SIZE) * blocksX + x / BLOCK_SIZE;
+    }
+
+    private int blockMax(final int block) {
+        if (dirty[block]) {
+            final int x0 = (block % blocksX) * BLOCK_SIZE;
+            final int y0 = (block / blocksX) * BLOCK_SIZE;
+            final int x1 = Math.min(x0 + BLOCK_SIZE, map.width);
+            final int y1 = Math.min(y0 + BLOCK_SIZE, map.height);
+
+            int max = 0;
+            for (int y = y0; y < y1; ++y) {
+                for (int i = y * map.width + x0, end = y * map.width + x1; i < end; ++i) {
+                    max = Math.max(max, effectiveHalite(i));
+                }
+            }
+            blockMax[block] = max;
+            dirty[block] = false;
+        }
+        return blockMax[block];
+    }
+
+    private int minDistance(final int block, final int x, final int y) {
+        final int x0 = (block % blocksX) * BLOCK_SIZE;
+        final int y0 = (block / blocksX) * BLOCK_SIZE;
+        final int x1 = Math.min(x0 + BLOCK_SIZE, map.width) - 1;
+        final int y1 = Math.min(y0 + BLOCK_SIZE, map.height) - 1;
+
+        final int dx = x >= x0 && x <= x1 ? 0 : Math.min(axisDistance(x, x0, map.width), axisDistance(x, x1, map.width));
+        final int dy = y >= y0 && y <= y1 ? 0 : Math.min(axisDistance(y, y0, map.height), axisDistance(y, y1, map.height));
+        return dx + dy;
+    }
+
+    private static int axisDistance(final int a, final int b, final int size) {
+        final int d = Math.abs(a - b);
+        return Math.min(d, size - d);
+    }
+}
@@ -1,39 +1,96 @@
 package hlt;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
 public class Input {
-    private final String[] input;
-    private int current;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final boolean exitOnClose;
+
+    public Input(final ReadableByteChannel channel) {
+        this(channel, false);
+    }
+
+    private Input(final ReadableByteChannel channel, final boolean exitOnClose) {
+        this.channel = channel;
+        this.exitOnClose = exitOnClose;
+        // Start out with nothing to read so the first access fills the buffer.
+        buffer.flip();
+    }
 
-    public Input(final String line) {
-        input = line.split(" ");
+    // The engine closing stdin means the game is over, so that exits the bot.
+    public static Input fromStdin() {
+        return new Input(Channels.newChannel(System.in), true);
     }
 
+    // Scans the next whitespace separated integer straight out of the byte buffer,
+    // so no String or String[] is created per line.
     public int getInt() {
-        return Integer.parseInt(input[current++]);
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r') {
+            c = read();
+        }
+
+        final boolean negative = c == '-';
+        if (negative) {
+            c = read();
+        }
+
+        if (c < '0' || c > '9') {
+            Log.log("Error: input: expected an integer but got '" + (char)c + "'.");
+            throw new IllegalStateException();
+        }
+
+        int value = 0;
+        for (; c >= '0' && c <= '9'; c = read()) {
+            value = value * 10 + (c - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    public String readLine() {
+        final StringBuilder builder = new StringBuilder();
+
+        for (int c; (c = read()) != '\n';) {
+            if (c == '\r') {
+                // Ignore carriage return if on windows for manual testing.
+                continue;
+            }
+            builder.append((char)c);
+        }
+
+        return builder.toString();
     }
 
-    public static Input readInput() {
-        return new Input(readLine());
+    private int read() {
+        if (!buffer.hasRemaining()) {
+            fill();
+        }
+        return buffer.get() & 0xFF;
     }
 
-    public static String readLine() {
+    private void fill() {
         try {
-            final StringBuilder builder = new StringBuilder();
-
-            int buffer;
-            for (; (buffer = System.in.read()) >= 0;) {
-                if (buffer == '\n') {
-                    break;
-                }
-                if (buffer == '\r') {
-                    // Ignore carriage return if on windows for manual testing.
-                    continue;
-                }
-                builder.append((char)buffer);
-            }
+            buffer.clear();
+            int count;
+            do {
+                count = channel.read(buffer);
+            } while (count == 0);
+            buffer.flip();
 
-            return builder.toString();
+            if (count < 0) {
+                throw new IOException("End of stream");
+            }
         } catch (final Exception e) {
+            if (!exitOnClose) {
+                throw new IllegalStateException("Input closed", e);
+            }
             Log.log("Input connection from server closed. Exiting...");
             System.exit(0);
             throw new IllegalStateException(e);
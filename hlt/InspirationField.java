@@ -0,0 +1,91 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Works out which cells are inspired for a player: those with at least
+// INSPIRATION_SHIP_COUNT enemy ships within INSPIRATION_RADIUS, measured as
+// Manhattan distance on the torus. Enemy ships are counted into a grid and each
+// row gets a prefix sum; the diamond around a cell is then one window sum per
+// row it spans, so the whole map costs O(cells * radius) rather than
+// O(cells * ships).
+class InspirationField {
+    private final int width;
+    private final int height;
+    private final int[] counts;
+    // rowPrefix[y * (width + 1) + x] is the number of enemy ships in row y left of column x.
+    private final int[] rowPrefix;
+
+    InspirationField(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        counts = new int[width * height];
+        rowPrefix = new int[(width + 1) * height];
+    }
+
+    void compute(final Player me, final List<Player> players, final BitSet result) {
+        result.clear();
+        if (!Constants.INSPIRATION_ENABLED) {
+            return;
+        }
+
+        Arrays.fill(counts, 0);
+        int enemyShips = 0;
+        for (final Player player : players) {
+            if (player == me) {
+                continue;
+            }
+            for (final Ship ship : player.ships.values()) {
+                final int x = ((ship.position.x % width) + width) % width;
+                final int y = ((ship.position.y % height) + height) % height;
+                ++counts[y * width + x];
+                ++enemyShips;
+            }
+        }
+        if (enemyShips < Constants.INSPIRATION_SHIP_COUNT) {
+            return;
+        }
+
+        for (int y = 0; y < height; ++y) {
+            final int row = y * (width + 1);
+            rowPrefix[row] = 0;
+            for (int x = 0; x < width; ++x) {
+                rowPrefix[row + x + 1] = rowPrefix[row + x] + counts[y * width + x];
+            }
+        }
+
+        final int radius = Constants.INSPIRATION_RADIUS;
+        final int needed = Constants.INSPIRATION_SHIP_COUNT;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int total = 0;
+                for (int dy = -radius; dy <= radius && total < needed; ++dy) {
+                    final int rowY = ((y + dy) % height + height) % height;
+                    total += windowSum(rowY, x, radius - Math.abs(dy));
+                }
+                if (total >= needed) {
+                    result.set(y * width + x);
+                }
+            }
+        }
+    }
+
+    // Enemy ships in row y from column x - reach to x + reach, wrapping around the edges.
+    private int windowSum(final int y, final int x, final int reach) {
+        final int row = y * (width + 1);
+        if (2 * reach + 1 >= width) {
+            return rowPrefix[row + width];
+        }
+
+        final int low = x - reach;
+        final int high = x + reach + 1;
+        if (low < 0) {
+            return rowPrefix[row + width] - rowPrefix[row + low + width] + rowPrefix[row + high];
+        }
+        if (high > width) {
+            return rowPrefix[row + width] - rowPrefix[row + low] + rowPrefix[row + high - width];
+        }
+        return rowPrefix[row + high] - rowPrefix[row + low];
+    }
+}
@@ -0,0 +1,196 @@
+package hlt;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// A map from raw entity ids to objects, without boxing the keys. Entries are kept
+// in insertion order in a dense array, which is what values() walks, and an
+// open-addressing table with linear probing maps a key to its entry, so a lookup
+// is one hash and usually one probe. Removing an entry takes it out of the table
+// by backward shifting, as IntSet does, and leaves a hole in the dense array. The
+// owner calls compact() once it has made its removals, which closes every hole
+// in one pass, so a frame that loses many ships at once still costs O(size).
+// values() cannot be read while there are holes; reading never changes the map.
+// Keys must not be negative.
+public final class IntMap<V> {
+    private static final int FREE = -1;
+
+    private int[] keys = new int[16];
+    private Object[] values = new Object[16];
+    // Live entries; the dense arrays hold size + holes, with removed ones as null values.
+    private int size;
+    private int holes;
+    // Entry index per slot, or FREE; the length is a power of two at least twice the entries.
+    private int[] table = newTable(32);
+
+    private final ValuesView valuesView = new ValuesView();
+
+    // Fails fast, as the java.util collections do, when the map gains or loses
+    // entries while an iterator is open.
+    private final class ValuesView extends AbstractList<V> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(final int index) {
+            if (holes > 0) {
+                Log.log("IntMap: values read before compact, with " + holes + " removed entries");
+                throw new IllegalStateException();
+            }
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            return (V) values[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        void changed() {
+            ++modCount;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(final int key) {
+        return table[slot(key)] != FREE;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        final int entry = table[slot(key)];
+        return entry == FREE ? null : (V) values[entry];
+    }
+
+    // Replaces the value of a key already present, keeping its place in the order.
+    // Values must not be null, which marks a removed entry.
+    @SuppressWarnings("unchecked")
+    public V put(final int key, final V value) {
+        if (key < 0 || value == null) {
+            Log.log("IntMap: cannot put " + value + " at " + key);
+            throw new IllegalStateException();
+        }
+        final int slot = slot(key);
+        if (table[slot] != FREE) {
+            final V old = (V) values[table[slot]];
+            values[table[slot]] = value;
+            return old;
+        }
+
+        compact();
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        table[slot] = size;
+        ++size;
+        valuesView.changed();
+        if (size * 2 > table.length) {
+            rebuild(table.length * 2);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(final int key) {
+        int gap = slot(key);
+        final int entry = table[gap];
+        if (entry == FREE) {
+            return null;
+        }
+        final V old = (V) values[entry];
+        values[entry] = null;
+        --size;
+        ++holes;
+        valuesView.changed();
+
+        // Move back every later entry of the run whose home is not between the gap and itself.
+        table[gap] = FREE;
+        final int mask = table.length - 1;
+        for (int slot = (gap + 1) & mask; table[slot] != FREE; slot = (slot + 1) & mask) {
+            final int home = hash(keys[table[slot]]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = table[slot];
+                table[slot] = FREE;
+                gap = slot;
+            }
+        }
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size + holes, null);
+        size = 0;
+        holes = 0;
+        Arrays.fill(table, FREE);
+        valuesView.changed();
+    }
+
+    // The values in insertion order, as a read-only view that follows the map.
+    // Only valid while there are no removals waiting for compact().
+    public List<V> values() {
+        return valuesView;
+    }
+
+    // Closes the holes left by remove, keeping the order, and points the table at
+    // the entries' new places. Call it once after a batch of removals.
+    public void compact() {
+        if (holes == 0) {
+            return;
+        }
+        int live = 0;
+        for (int entry = 0; entry < size + holes; ++entry) {
+            if (values[entry] == null) {
+                continue;
+            }
+            if (live != entry) {
+                keys[live] = keys[entry];
+                values[live] = values[entry];
+                values[entry] = null;
+                table[slot(keys[live])] = live;
+            }
+            ++live;
+        }
+        holes = 0;
+        valuesView.changed();
+    }
+
+    // The slot holding key, or the free slot where it would go.
+    private int slot(final int key) {
+        final int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != FREE && keys[table[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rebuild(final int capacity) {
+        table = newTable(capacity);
+        for (int entry = 0; entry < size; ++entry) {
+            table[slot(keys[entry])] = entry;
+        }
+    }
+
+    private static int[] newTable(final int capacity) {
+        final int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+    // Spreads sequential ids over the table (Fibonacci hashing).
+    static int hash(final int key) {
+        final int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,95 @@
+package hlt;
+
+import java.util.Arrays;
+
+// A set of raw entity ids, without boxing: an open-addressing table with linear
+// probing. Removal shifts the entries that follow back into the gap instead of
+// leaving tombstones, so the table never fills up with dead slots. Keys must not
+// be negative.
+public final class IntSet {
+    private static final int FREE = -1;
+
+    // Power-of-two length, kept at least twice the size.
+    private int[] slots = newSlots(32);
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(final int key) {
+        return slots[slot(key)] != FREE;
+    }
+
+    // True if key was not in the set.
+    public boolean add(final int key) {
+        if (key < 0) {
+            Log.log("IntSet: negative key " + key);
+            throw new IllegalStateException();
+        }
+        final int slot = slot(key);
+        if (slots[slot] != FREE) {
+            return false;
+        }
+        slots[slot] = key;
+        ++size;
+        if (size * 2 > slots.length) {
+            final int[] old = slots;
+            slots = newSlots(old.length * 2);
+            for (final int value : old) {
+                if (value != FREE) {
+                    slots[slot(value)] = value;
+                }
+            }
+        }
+        return true;
+    }
+
+    // True if key was in the set.
+    public boolean remove(final int key) {
+        int gap = slot(key);
+        if (slots[gap] == FREE) {
+            return false;
+        }
+        slots[gap] = FREE;
+        --size;
+
+        // Move back every later key of the run whose home is not between the gap and itself.
+        final int mask = slots.length - 1;
+        for (int slot = (gap + 1) & mask; slots[slot] != FREE; slot = (slot + 1) & mask) {
+            final int home = IntMap.hash(slots[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                slots[gap] = slots[slot];
+                slots[slot] = FREE;
+                gap = slot;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, FREE);
+            size = 0;
+        }
+    }
+
+    private int slot(final int key) {
+        final int mask = slots.length - 1;
+        int slot = IntMap.hash(key) & mask;
+        while (slots[slot] != FREE && slots[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int[] newSlots(final int capacity) {
+        final int[] slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+}
@@ -1,14 +1,35 @@
 package hlt;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class Log {
-    private final FileWriter file;
+    public enum Level { DEBUG, INFO }
 
-    private static Log INSTANCE;
+    /** Set to false to compile out all debug logging. */
+    public static final boolean DEBUG_ENABLED = true;
+
+    private static final long POLL_MILLIS = 50;
+    private static final long DRAIN_TIMEOUT_MILLIS = 1000;
+
+    private final Writer file;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closing;
+
+    // Set by open on the bot's thread and read by the exit hook.
+    private static volatile Log INSTANCE;
     private static ArrayList<String> LOG_BUFFER = new ArrayList<>();
+    private static volatile Level LEVEL = Level.INFO;
+    private static volatile boolean DISABLED;
+    private static final ArrayList<Runnable> EXIT_TASKS = new ArrayList<>();
 
     static {
         Runtime.getRuntime().addShutdownHook(new AtExit());
@@ -17,7 +38,14 @@ public class Log {
     private static class AtExit extends Thread {
         @Override
         public void run() {
+            synchronized (EXIT_TASKS) {
+                EXIT_TASKS.forEach(Runnable::run);
+            }
             if (INSTANCE != null) {
+                INSTANCE.close();
+                return;
+            }
+            if (DISABLED) {
                 return;
             }
 
@@ -33,8 +61,10 @@ public class Log {
         }
     }
 
-    private Log(final FileWriter f) {
+    private Log(final Writer f) {
         file = f;
+        writer = new Thread(this::drain, "log-writer");
+        writer.setDaemon(true);
     }
 
     static void open(final int botId) {
@@ -44,9 +74,9 @@ public class Log {
         }
 
         final String filename = "bot-" + botId + ".log";
-        final FileWriter writer;
+        final Writer writer;
         try {
-            writer = new FileWriter(filename);
+            writer = new BufferedWriter(new FileWriter(filename));
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
@@ -56,22 +86,106 @@ public class Log {
             for (final String message : LOG_BUFFER) {
                 writer.append(message).append('\n');
             }
+            writer.flush();
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
         LOG_BUFFER.clear();
+
+        INSTANCE.writer.start();
+    }
+
+    // Runs the task on exit while the log can still be written to.
+    static void atExit(final Runnable task) {
+        synchronized (EXIT_TASKS) {
+            EXIT_TASKS.add(task);
+        }
+    }
+
+    // Drops every message from now on, e.g. when many games are simulated in one process.
+    public static void disable() {
+        DISABLED = true;
+        LOG_BUFFER.clear();
+    }
+
+    public static void setLevel(final Level level) {
+        LEVEL = level;
+    }
+
+    public static boolean isEnabled(final Level level) {
+        return level.compareTo(LEVEL) >= 0;
     }
 
     public static void log(final String message) {
+        if (DISABLED) {
+            return;
+        }
         if (INSTANCE == null) {
             LOG_BUFFER.add(message);
             return;
         }
 
+        INSTANCE.queue.add(message);
+    }
+
+    // Only for constant messages; anything concatenated goes through the Supplier overload.
+    public static void debug(final String message) {
+        if (DEBUG_ENABLED && isEnabled(Level.DEBUG)) {
+            log(message);
+        }
+    }
+
+    // The message is only built if it is going to be written.
+    public static void debug(final Supplier<String> message) {
+        if (DEBUG_ENABLED && isEnabled(Level.DEBUG)) {
+            log(message.get());
+        }
+    }
+
+    // Runs on the writer thread: waits for messages and writes whatever has
+    // queued up since the last batch with a single flush.
+    private void drain() {
+        final ArrayList<String> batch = new ArrayList<>();
         try {
-            INSTANCE.file.append(message).append('\n').flush();
+            while (!closing || !queue.isEmpty()) {
+                final String first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch);
+                write(batch);
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(final ArrayList<String> batch) {
+        try {
+            for (final String message : batch) {
+                file.append(message).append('\n');
+            }
+            file.flush();
         } catch (final IOException e) {
             e.printStackTrace();
         }
     }
+
+    private void close() {
+        closing = true;
+        try {
+            writer.join(DRAIN_TIMEOUT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            file.close();
+        } catch (final IOException e) {
+            // Nothing much we can do here.
+        }
+    }
 }
@@ -1,32 +1,62 @@
 package hlt;
 
+// A view onto a single cell of the flat arrays held by GameMap.
 public class MapCell {
     public final Position position;
-    public int halite;
-    public Ship ship;
-    public Entity structure;
-    public boolean inspired;
+    private final GameMap map;
+    private final int index;
 
-    public MapCell(final Position position, final int halite) {
+    MapCell(final GameMap map, final Position position, final int index) {
+        this.map = map;
         this.position = position;
-        this.halite = halite;
+        this.index = index;
+    }
+
+    public int halite() {
+        return map.halite[index];
+    }
+
+    public void setHalite(final int halite) {
+        map.setHalite(index, halite);
+    }
+
+    public Ship ship() {
+        return map.shipAt(index);
+    }
+
+    public Entity structure() {
+        return map.structureAt(index);
+    }
+
+    public void setStructure(final Entity structure) {
+        map.setStructure(index, structure);
+    }
+
+    public boolean isInspired() {
+        return map.inspired.get(index);
+    }
+
+    public void setInspired(final boolean inspired) {
+        map.setInspired(index, inspired);
     }
 
     public boolean isEmpty() {
-        return ship == null && structure == null;
+        return !isOccupied() && !hasStructure();
     }
 
     public boolean isOccupied() {
-        return ship != null;
+        return map.isOccupied(index);
     }
 
     public boolean hasStructure() {
-        return structure != null;
+        return map.hasStructure(index);
     }
 
     public void markUnsafe(final Ship ship) {
-        this.ship = ship;
+        map.markUnsafe(index, ship);
     }
 
-    public void markSafe() { ship = null; }
+    public void markSafe() {
+        map.markSafe(index);
+    }
 }
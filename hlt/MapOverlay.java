@@ -0,0 +1,135 @@
+package hlt;
+
+import java.util.Arrays;
+
+// A copy-on-write layer of ship reservations over a GameMap (or over another
+// overlay). Reads fall through to the layer below until a cell has been marked
+// here; writes only ever touch this layer, which is a small hash table of the
+// cells changed so far. Discarding an overlay rolls its reservations back, and
+// commit() pushes them one layer down. Overlays over a frozen map can be used
+// from different threads as long as each overlay stays on one thread.
+public class MapOverlay {
+    private static final int EMPTY = -1;
+
+    private final GameMap map;
+    private final MapOverlay parent;
+
+    private int[] keys = new int[16];
+    private Ship[] ships = new Ship[16];
+    private int size;
+
+    MapOverlay(final GameMap map, final MapOverlay parent) {
+        this.map = map;
+        this.parent = parent;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public MapOverlay fork() {
+        return new MapOverlay(map, this);
+    }
+
+    public GameMap map() {
+        return map;
+    }
+
+    public Ship shipAt(final int index) {
+        final int slot = find(index);
+        if (keys[slot] == index) {
+            return ships[slot];
+        }
+        return parent != null ? parent.shipAt(index) : map.shipAt(index);
+    }
+
+    public Ship shipAt(final Position position) {
+        return shipAt(map.index(position));
+    }
+
+    public boolean isOccupied(final int index) {
+        return shipAt(index) != null;
+    }
+
+    public boolean isOccupied(final Position position) {
+        return isOccupied(map.index(position));
+    }
+
+    public void markUnsafe(final int index, final Ship ship) {
+        put(index, ship);
+    }
+
+    public void markUnsafe(final Position position, final Ship ship) {
+        put(map.index(position), ship);
+    }
+
+    public void markSafe(final int index) {
+        put(index, null);
+    }
+
+    public void markSafe(final Position position) {
+        put(map.index(position), null);
+    }
+
+    // Applies this layer's reservations to the layer below and empties this one.
+    public void commit() {
+        for (int slot = 0; slot < keys.length; ++slot) {
+            final int index = keys[slot];
+            if (index == EMPTY) {
+                continue;
+            }
+
+            if (parent != null) {
+                parent.put(index, ships[slot]);
+            } else if (ships[slot] != null) {
+                map.markUnsafe(index, ships[slot]);
+            } else {
+                map.markSafe(index);
+            }
+        }
+        clear();
+    }
+
+    // Drops every reservation made in this layer.
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(ships, null);
+        size = 0;
+    }
+
+    private void put(final int index, final Ship ship) {
+        int slot = find(index);
+        if (keys[slot] != index) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(index);
+            }
+            keys[slot] = index;
+            ++size;
+        }
+        ships[slot] = ship;
+    }
+
+    private int find(final int index) {
+        final int mask = keys.length - 1;
+        int slot = (index * 0x9E3779B1) >>> 16 & mask;
+        while (keys[slot] != EMPTY && keys[slot] != index) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        final int[] oldKeys = keys;
+        final Ship[] oldShips = ships;
+
+        keys = new int[oldKeys.length * 2];
+        ships = new Ship[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+
+        for (int slot = 0; slot < oldKeys.length; ++slot) {
+            if (oldKeys[slot] != EMPTY) {
+                final int newSlot = find(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                ships[newSlot] = oldShips[slot];
+            }
+        }
+    }
+}
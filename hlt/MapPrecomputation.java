@@ -0,0 +1,56 @@
+package hlt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// What can be worked out from the starting map alone, before game.ready while the
+// turn clock is not running yet: the candidate dropoff sites, the centres of the
+// richest halite clusters (the halite within DropoffPlanner.RADIUS of a cell) that
+// are well spaced from every shipyard and each other. The DropoffPlanner only
+// scores these cells for the rest of the game. It takes a few milliseconds even
+// on the largest maps, so it is simply done again every game.
+public class MapPrecomputation {
+    // Cell indices, richest cluster first, at least the dropoff spacing from every shipyard and each other.
+    public final int[] candidateSites;
+
+    private MapPrecomputation(final int[] candidateSites) {
+        this.candidateSites = candidateSites;
+    }
+
+    static MapPrecomputation compute(final GameMap map, final List<Player> players) {
+        final int cells = map.width * map.height;
+        final DropoffPlanner planner = map.dropoffPlanner();
+        final int[] clusterHalite = new int[cells];
+        planner.haliteWindows(clusterHalite);
+
+        final Integer[] order = new Integer[cells];
+        for (int index = 0; index < cells; ++index) {
+            order[index] = index;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(clusterHalite[b], clusterHalite[a]));
+
+        final ArrayList<Integer> chosen = new ArrayList<>();
+        final int spacing = planner.minSpacing();
+        final int maxSites = 4 * players.size();
+        for (int i = 0; i < cells && chosen.size() < maxSites; ++i) {
+            final int index = order[i];
+            boolean spaced = true;
+            for (final Player player : players) {
+                spaced &= map.calculateDistance(index, map.index(player.shipyard.position)) >= spacing;
+            }
+            for (final int site : chosen) {
+                spaced &= map.calculateDistance(index, site) >= spacing;
+            }
+            if (spaced) {
+                chosen.add(index);
+            }
+        }
+
+        final int[] candidateSites = new int[chosen.size()];
+        for (int i = 0; i < candidateSites.length; ++i) {
+            candidateSites[i] = chosen.get(i);
+        }
+        return new MapPrecomputation(candidateSites);
+    }
+}
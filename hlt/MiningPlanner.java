@@ -0,0 +1,120 @@
+package hlt;
+
+// Picks where a ship should mine by the halite per turn of the whole trip: travel
+// to a cell, mine it for k turns, then carry the cargo to the nearest dropoff.
+// The cargo already on board counts towards every trip, and so do the turns the
+// ship has been out since it last delivered (Ship.tripTurns), so a loaded ship
+// prefers cells on the way home and heads straight home once nothing beats
+// delivering now, but is not lured home by a little cargo early in a trip.
+// A turn of mining takes ceil(halite / EXTRACT_RATIO) from the cell (plus the
+// bonus when inspired) and leaving a cell costs halite / MOVE_COST_RATIO. What k
+// turns of mining yield and leave behind is tabulated once for every starting
+// halite, so scoring a cell is a handful of array reads.
+public class MiningPlanner {
+    public static final int MAX_MINING_TURNS = 10;
+
+    // The outcome for one ship: where to go, how long to mine there and the halite per turn expected.
+    // No mining turns means the ship should deliver its cargo to target, the nearest dropoff.
+    public static final class Plan {
+        public final Position target;
+        public final int miningTurns;
+        public final double halitePerTurn;
+
+        Plan(final Position target, final int miningTurns, final double halitePerTurn) {
+            this.target = target;
+            this.miningTurns = miningTurns;
+            this.halitePerTurn = halitePerTurn;
+        }
+    }
+
+    private static final int TURNS = MAX_MINING_TURNS + 1;
+
+    private final GameMap map;
+    // Cells richer than this are looked up as this much.
+    private final int tableHalite;
+    // gained[h * TURNS + k] is the cargo from mining a cell that starts at h for k turns,
+    // left[h * TURNS + k] what stays in the cell; the inspired tables include the bonus.
+    private final int[] gained;
+    private final int[] left;
+    private final int[] inspiredGained;
+    private final int[] inspiredLeft;
+
+    MiningPlanner(final GameMap map) {
+        this.map = map;
+        tableHalite = 2 * Constants.MAX_HALITE;
+        gained = new int[(tableHalite + 1) * TURNS];
+        left = new int[(tableHalite + 1) * TURNS];
+        inspiredGained = new int[(tableHalite + 1) * TURNS];
+        inspiredLeft = new int[(tableHalite + 1) * TURNS];
+
+        for (int halite = 0; halite <= tableHalite; ++halite) {
+            fill(halite, Constants.EXTRACT_RATIO, 0, gained, left);
+            fill(halite, Constants.INSPIRED_EXTRACT_RATIO, Constants.INSPIRED_BONUS_MULTIPLIER, inspiredGained, inspiredLeft);
+        }
+    }
+
+    private static void fill(final int halite, final int extractRatio, final double bonus,
+                             final int[] gained, final int[] left) {
+        int cell = halite;
+        int cargo = 0;
+        for (int k = 0; k < TURNS; ++k) {
+            gained[halite * TURNS + k] = cargo;
+            left[halite * TURNS + k] = cell;
+
+            final int extracted = (cell + extractRatio - 1) / extractRatio;
+            cell -= extracted;
+            cargo += extracted + (int) (extracted * bonus);
+        }
+    }
+
+    // Only reads the map, so it can run for several ships at once.
+    public Plan plan(final Ship ship, final Player me) {
+        final DropoffDistances home = map.dropoffDistances(me);
+        final int shipIndex = map.index(ship.position);
+        final int capacity = Constants.MAX_HALITE - ship.halite;
+        final int cells = map.width * map.height;
+
+        // Cells on the way are not known yet, so each step past the first is charged as an average cell.
+        final int stepCost = (int) (map.totalHalite() / cells / Constants.MOVE_COST_RATIO);
+        final int leaveCost = map.halite[shipIndex] / Constants.MOVE_COST_RATIO;
+
+        // Delivering what is on board right away is the plan to beat.
+        final int elapsed = ship.tripTurns;
+        final int shipToHome = home.distance(shipIndex);
+        int bestIndex = -1;
+        int bestTurns = 0;
+        double bestRate = ship.halite > 0 && shipToHome > 0 ? (double) (ship.halite - leaveCost) / (elapsed + shipToHome) : 0;
+
+        for (int index = 0; index < cells; ++index) {
+            final int toCell = map.calculateDistance(shipIndex, index);
+            final int toHome = home.distance(index);
+            final boolean inspired = map.inspired.get(index);
+            final int row = Math.min(map.halite[index], tableHalite) * TURNS;
+            final int[] gain = inspired ? inspiredGained : gained;
+
+            final int travelCost = toCell == 0 ? 0 : leaveCost + (toCell - 1) * stepCost;
+            // Even a single turn of mining that filled the ship cannot beat the best so far.
+            if (ship.halite + Math.min(capacity, gain[row + MAX_MINING_TURNS]) - travelCost <= bestRate * (elapsed + toCell + 1 + toHome)) {
+                continue;
+            }
+
+            final int[] remaining = inspired ? inspiredLeft : left;
+            final int moveRatio = inspired ? Constants.INSPIRED_MOVE_COST_RATIO : Constants.MOVE_COST_RATIO;
+            for (int k = 1; k <= MAX_MINING_TURNS; ++k) {
+                final int returnCost = toHome == 0 ? 0 : remaining[row + k] / moveRatio + (toHome - 1) * stepCost;
+                final double rate = (double) (ship.halite + Math.min(capacity, gain[row + k]) - travelCost - returnCost)
+                        / (elapsed + toCell + k + toHome);
+                if (rate > bestRate) {
+                    bestRate = rate;
+                    bestIndex = index;
+                    bestTurns = k;
+                }
+            }
+        }
+
+        if (bestIndex < 0) {
+            return new Plan(home.nearest(shipIndex).position, 0, bestRate);
+        }
+        return new Plan(bestIndex == shipIndex ? ship.position : map.positionAt(bestIndex), bestTurns, bestRate);
+    }
+}
@@ -0,0 +1,186 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Settles the moves of a whole batch of ships at once. Every ship tries its
+// candidate moves in order; a move into a cell held by another ship of the batch
+// waits for that ship to be settled first, and a chain of such waits that closes
+// on itself (a swap or a longer cycle) is moved as a unit. Each ship is visited a
+// bounded number of times, using an explicit stack instead of recursion.
+// Occupancy is read from and reserved in a MapOverlay, never the map itself.
+class MoveResolver {
+    private static final byte UNRESOLVED = 0;
+    private static final byte VISITING = 1;
+    private static final byte MOVING = 2;
+    private static final byte STAYING = 3;
+
+    private final GameMap map;
+    private final int[] reserved;
+
+    private int[] slotById = new int[256];
+    private Ship[] ships = new Ship[64];
+    private int[] origin = new int[64];
+    private int[] target = new int[64];
+    private int[] choice = new int[64];
+    private byte[] status = new byte[64];
+    private int[] stack = new int[64];
+    private int[] stackPosition = new int[64];
+
+    MoveResolver(final GameMap map) {
+        this.map = map;
+        reserved = new int[map.width * map.height];
+        Arrays.fill(reserved, -1);
+        Arrays.fill(slotById, -1);
+    }
+
+    void resolve(final MapOverlay reservations, final List<Ship> batch, final List<Command> commands) {
+        final int count = batch.size();
+        ensureCapacity(count);
+
+        for (int slot = 0; slot < count; ++slot) {
+            final Ship ship = batch.get(slot);
+            final int id = ship.id.id;
+            if (id >= slotById.length) {
+                final int oldLength = slotById.length;
+                slotById = Arrays.copyOf(slotById, Math.max(id + 1, oldLength * 2));
+                Arrays.fill(slotById, oldLength, slotById.length, -1);
+            }
+            slotById[id] = slot;
+
+            ships[slot] = ship;
+            origin[slot] = map.index(ship.position);
+            choice[slot] = 0;
+            status[slot] = UNRESOLVED;
+        }
+
+        for (int root = 0; root < count; ++root) {
+            if (status[root] != UNRESOLVED) {
+                continue;
+            }
+
+            int top = 0;
+            stack[top] = root;
+            stackPosition[root] = top;
+            status[root] = VISITING;
+
+            while (top >= 0) {
+                final int slot = stack[top];
+                if (status[slot] != VISITING) {
+                    // Settled as part of a cycle further up the stack.
+                    --top;
+                    continue;
+                }
+
+                final List<Direction> moves = ships[slot].moves;
+                if (choice[slot] >= moves.size()) {
+                    stay(slot, commands);
+                    --top;
+                    continue;
+                }
+
+                final int cell = map.neighbor(origin[slot], moves.get(choice[slot]));
+                target[slot] = cell;
+
+                if (reserved[cell] >= 0) {
+                    ++choice[slot];
+                    continue;
+                }
+
+                final Ship occupant = reservations.shipAt(cell);
+                if (occupant == null) {
+                    move(reservations, slot, commands);
+                    --top;
+                    continue;
+                }
+
+                final int other = slotOf(occupant);
+                if (other < 0 || origin[other] != cell) {
+                    // An enemy, a threatened cell, or one of our ships that has already committed.
+                    ++choice[slot];
+                    continue;
+                }
+
+                switch (status[other]) {
+                    case MOVING:
+                        move(reservations, slot, commands);
+                        --top;
+                        break;
+                    case STAYING:
+                        ++choice[slot];
+                        break;
+                    case VISITING:
+                        moveCycle(reservations, stackPosition[other], top, commands);
+                        top = stackPosition[other] - 1;
+                        break;
+                    default:
+                        status[other] = VISITING;
+                        stack[++top] = other;
+                        stackPosition[other] = top;
+                        break;
+                }
+            }
+        }
+
+        for (int slot = 0; slot < count; ++slot) {
+            reserved[target[slot]] = -1;
+            slotById[ships[slot].id.id] = -1;
+            ships[slot].moves.clear();
+            ships[slot] = null;
+        }
+    }
+
+    private int slotOf(final Ship ship) {
+        final int id = ship.id.id;
+        final int slot = id >= 0 && id < slotById.length ? slotById[id] : -1;
+        return slot >= 0 && ships[slot] == ship ? slot : -1;
+    }
+
+    private void move(final MapOverlay reservations, final int slot, final List<Command> commands) {
+        if (reservations.shipAt(origin[slot]) == ships[slot]) {
+            reservations.markSafe(origin[slot]);
+        }
+        reservations.markUnsafe(target[slot], ships[slot]);
+        reserved[target[slot]] = slot;
+        status[slot] = MOVING;
+        commands.add(ships[slot].move(ships[slot].moves.get(choice[slot])));
+    }
+
+    private void stay(final int slot, final List<Command> commands) {
+        reserved[origin[slot]] = slot;
+        target[slot] = origin[slot];
+        status[slot] = STAYING;
+        commands.add(ships[slot].stayStill());
+    }
+
+    private void moveCycle(final MapOverlay reservations, final int from, final int to, final List<Command> commands) {
+        // Vacate every cell of the cycle before claiming any, since each target is another member's origin.
+        for (int i = from; i <= to; ++i) {
+            final int slot = stack[i];
+            if (reservations.shipAt(origin[slot]) == ships[slot]) {
+                reservations.markSafe(origin[slot]);
+            }
+        }
+        for (int i = from; i <= to; ++i) {
+            final int slot = stack[i];
+            reservations.markUnsafe(target[slot], ships[slot]);
+            reserved[target[slot]] = slot;
+            status[slot] = MOVING;
+            commands.add(ships[slot].move(ships[slot].moves.get(choice[slot])));
+        }
+    }
+
+    private void ensureCapacity(final int count) {
+        if (count <= ships.length) {
+            return;
+        }
+        final int capacity = Math.max(count, ships.length * 2);
+        ships = Arrays.copyOf(ships, capacity);
+        origin = Arrays.copyOf(origin, capacity);
+        target = Arrays.copyOf(target, capacity);
+        choice = Arrays.copyOf(choice, capacity);
+        status = Arrays.copyOf(status, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+        stackPosition = Arrays.copyOf(stackPosition, capacity);
+    }
+}
@@ -0,0 +1,82 @@
+package hlt;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Collects everything the bot sends for one turn in a reusable byte buffer and
+// hands it to the channel in a single write when flushed.
+public class Output {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public Output(final WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static Output toStdout() {
+        return new Output(new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    public Output putChar(final char c) {
+        ensureCapacity(1);
+        buffer.put((byte)c);
+        return this;
+    }
+
+    public Output putInt(final int value) {
+        ensureCapacity(11);
+        if (value < 0) {
+            buffer.put((byte)'-');
+        }
+
+        // Write the digits backwards into place so no temporary String is needed.
+        long remaining = Math.abs((long)value);
+        int digits = 1;
+        for (long rest = remaining / 10; rest > 0; rest /= 10) {
+            ++digits;
+        }
+        final int end = buffer.position() + digits;
+        for (int i = end - 1; i >= end - digits; --i) {
+            buffer.put(i, (byte)('0' + remaining % 10));
+            remaining /= 10;
+        }
+        buffer.position(end);
+        return this;
+    }
+
+    public Output putString(final String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); ++i) {
+            buffer.put((byte)s.charAt(i));
+        }
+        return this;
+    }
+
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (final Exception e) {
+            Log.log("Output connection to server closed. Exiting...");
+            System.exit(0);
+            throw new IllegalStateException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void ensureCapacity(final int bytes) {
+        if (buffer.remaining() < bytes) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hlt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Fans a per-ship evaluation out over a fork-join pool. The evaluator may only
+// read the map and must not touch shared per-ship state (Ship.moves, cell
+// markers); it returns its result instead, and results come back in the order
+// of the ships passed in so they can be applied serially afterwards.
+public class ParallelPlanner {
+    public interface ShipEvaluator<T> {
+        T evaluate(Ship ship);
+    }
+
+    // Below this many ships per task the work is done on the calling thread.
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+
+    public ParallelPlanner(final int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    public ParallelPlanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public <T> ArrayList<T> evaluate(final GameMap gameMap, final List<Ship> ships, final ShipEvaluator<T> evaluator) {
+        gameMap.prepareConcurrentReads();
+
+        final Object[] results = new Object[ships.size()];
+        final EvaluateRange<T> task = new EvaluateRange<>(ships, evaluator, results, 0, ships.size());
+        if (ships.size() <= SEQUENTIAL_THRESHOLD || pool.getParallelism() <= 1) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<T> typed = (List<T>) Arrays.asList(results);
+        return new ArrayList<>(typed);
+    }
+
+    private static class EvaluateRange<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Ship> ships;
+        private final ShipEvaluator<T> evaluator;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+
+        EvaluateRange(final List<Ship> ships, final ShipEvaluator<T> evaluator, final Object[] results, final int from, final int to) {
+            this.ships = ships;
+            this.evaluator = evaluator;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; ++i) {
+                    results[i] = evaluator.evaluate(ships.get(i));
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateRange<>(ships, evaluator, results, from, middle),
+                      new EvaluateRange<>(ships, evaluator, results, middle, to));
+        }
+    }
+}
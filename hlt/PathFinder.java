@@ -0,0 +1,296 @@
+package hlt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Cheapest paths on the wrapped grid, where a step costs the halite burnt leaving
+// a cell (halite / MOVE_COST_RATIO) plus a fixed charge for the turn it takes.
+// Paths do not pass through cells held or threatened by enemy ships (see markEnemyShips).
+//
+// Searches run on a binary heap of packed (cost, cell) longs and flat arrays that
+// every thread allocates once, and a generation stamp stands in for clearing
+// them, so a search only touches the cells it reaches. The home field is one
+// search outwards from all of a player's dropoffs at once and gives every cell its
+// cheapest first step home.
+public class PathFinder {
+    private static final int NO_STEP = -1;
+    private static final Direction[] STEPS = { Direction.NORTH, Direction.SOUTH, Direction.EAST, Direction.WEST };
+
+    private static final class Search {
+        final int[] cost;
+        final int[] parent;
+        final int[] stamp;
+        final long[] heap;
+        int generation;
+        int size;
+
+        Search(final int cells) {
+            cost = new int[cells];
+            parent = new int[cells];
+            stamp = new int[cells];
+            // Each cell is pushed at most once per incoming edge, plus the sources.
+            heap = new long[cells * (STEPS.length + 1)];
+        }
+
+        void reset() {
+            ++generation;
+            size = 0;
+        }
+
+        boolean reached(final int index) {
+            return stamp[index] == generation;
+        }
+
+        // Records a cheaper way to reach index and queues it.
+        void offer(final int index, final int newCost, final int from, final int priority) {
+            if (reached(index) && cost[index] <= newCost) {
+                return;
+            }
+            stamp[index] = generation;
+            cost[index] = newCost;
+            parent[index] = from;
+            push((long) priority << 32 | index);
+        }
+
+        private void push(final long entry) {
+            int slot = size++;
+            while (slot > 0) {
+                final int up = (slot - 1) >>> 1;
+                if (heap[up] <= entry) {
+                    break;
+                }
+                heap[slot] = heap[up];
+                slot = up;
+            }
+            heap[slot] = entry;
+        }
+
+        long pop() {
+            final long top = heap[0];
+            final long last = heap[--size];
+            int slot = 0;
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    ++child;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[slot] = heap[child];
+                slot = child;
+            }
+            heap[slot] = last;
+            return top;
+        }
+    }
+
+    private final GameMap map;
+    private final ThreadLocal<Search> searches;
+    private final int[] homeCost;
+    private final byte[] homeStep;
+    // States are turn * cells + cell; only used from the thread that routes returning ships.
+    private Search spaceTime;
+
+    PathFinder(final GameMap map) {
+        this.map = map;
+        final int cells = map.width * map.height;
+        searches = ThreadLocal.withInitial(() -> new Search(cells));
+        homeCost = new int[cells];
+        homeStep = new byte[cells];
+    }
+
+    // Rebuilds the home field for me: a search from every shipyard and dropoff at
+    // once, over the reversed steps, so each cell learns its cheapest way home.
+    public void updateHomeField(final Player me, final int turnCost) {
+        final Search search = searches.get();
+        search.reset();
+
+        search.offer(map.index(me.shipyard.position), 0, -1, 0);
+        for (final Dropoff dropoff : me.dropoffs.values()) {
+            search.offer(map.index(dropoff.position), 0, -1, 0);
+        }
+
+        while (search.size > 0) {
+            final long entry = search.pop();
+            final int index = (int) entry;
+            if ((int) (entry >>> 32) != search.cost[index]) {
+                continue;
+            }
+
+            // A blocked cell still learns its way out, but no path home runs through it.
+            if (search.parent[index] >= 0 && isBlocked(index, me)) {
+                continue;
+            }
+            for (final Direction step : STEPS) {
+                final int next = map.neighbor(index, step);
+                // Going home from next means leaving next, so that is the cell whose halite is burnt.
+                final int newCost = search.cost[index] + leaveCost(next) + turnCost;
+                search.offer(next, newCost, index, newCost);
+            }
+        }
+
+        Arrays.fill(homeStep, (byte) NO_STEP);
+        for (int index = 0; index < homeCost.length; ++index) {
+            if (!search.reached(index)) {
+                homeCost[index] = Integer.MAX_VALUE;
+                continue;
+            }
+            homeCost[index] = search.cost[index];
+            if (search.parent[index] >= 0) {
+                homeStep[index] = (byte) stepTowards(index, search.parent[index]).ordinal();
+            }
+        }
+    }
+
+    // Halite plus turn charges of the cheapest way home from index, as of the last updateHomeField.
+    public int homeCost(final int index) {
+        return homeCost[index];
+    }
+
+    // The first step of the cheapest way home, or STILL on a dropoff or when no way was found.
+    public Direction homeStep(final int index) {
+        return homeStep[index] == NO_STEP ? Direction.STILL : Direction.values()[homeStep[index]];
+    }
+
+    // First step of the cheapest path from source to target, found with A* using the
+    // Manhattan distance times turnCost as the bound. Only reads the map, so it can
+    // run for several ships at once.
+    public Direction firstStep(final int source, final int target, final Player me, final int turnCost) {
+        if (source == target) {
+            return Direction.STILL;
+        }
+
+        final Search search = searches.get();
+        search.reset();
+        search.offer(source, 0, -1, estimate(source, target, turnCost));
+
+        while (search.size > 0) {
+            final long entry = search.pop();
+            final int index = (int) entry;
+            if ((int) (entry >>> 32) != search.cost[index] + estimate(index, target, turnCost)) {
+                continue;
+            }
+            if (index == target) {
+                int step = target;
+                while (search.parent[step] != source) {
+                    step = search.parent[step];
+                }
+                return stepTowards(source, step);
+            }
+
+            final int newCost = search.cost[index] + leaveCost(index) + turnCost;
+            for (final Direction direction : STEPS) {
+                final int next = map.neighbor(index, direction);
+                if (next != target && isBlocked(next, me)) {
+                    continue;
+                }
+                search.offer(next, newCost, index, newCost + estimate(next, target, turnCost));
+            }
+        }
+
+        return Direction.STILL;
+    }
+
+    // Plans the ship's way home over the table's horizon, one move or wait per turn,
+    // around the cells the table has reserved at the turn the ship would get there,
+    // and reserves the path it picks. Past the horizon the home field is trusted, and
+    // it is also the A* bound, so the search heads straight for the cheap ways home.
+    // Between equally cheap plans the one that waits later wins, since the ships
+    // ahead may well have moved on by then. Returns the first move, STILL if the
+    // ship should wait or is already home, or null when every way is blocked.
+    // Relies on updateHomeField for me, and is meant for one thread at a time.
+    public Direction reserveHomePath(final int source, final Player me, final int turnCost, final ReservationTable table) {
+        if (homeCost[source] == 0) {
+            return Direction.STILL;
+        }
+        if (homeCost[source] == Integer.MAX_VALUE) {
+            return null;
+        }
+
+        final int cells = homeCost.length;
+        final int horizon = table.horizon();
+        if (spaceTime == null || spaceTime.cost.length != cells * (horizon + 1)) {
+            spaceTime = new Search(cells * (horizon + 1));
+        }
+        // Costs are scaled so that a wait penalty below one unit only breaks ties.
+        final int scale = horizon + 1;
+        final Search search = spaceTime;
+        search.reset();
+        search.offer(source, 0, -1, homeCost[source] * scale);
+
+        int goal = -1;
+        while (search.size > 0) {
+            final long entry = search.pop();
+            final int state = (int) entry;
+            final int index = state % cells;
+            final int turn = state / cells;
+            if ((int) (entry >>> 32) != search.cost[state] + homeCost[index] * scale) {
+                continue;
+            }
+            if (homeCost[index] == 0 || turn == horizon) {
+                goal = state;
+                break;
+            }
+
+            for (int move = 0; move <= STEPS.length; ++move) {
+                final int next = move == STEPS.length ? index : map.neighbor(index, STEPS[move]);
+                if (homeCost[next] == Integer.MAX_VALUE || table.isReserved(next, turn + 1)
+                        || (next != index && homeCost[next] != 0 && isBlocked(next, me))) {
+                    continue;
+                }
+                final int stepCost = next == index ? turnCost * scale + horizon - turn : (leaveCost(index) + turnCost) * scale;
+                final int newCost = search.cost[state] + stepCost;
+                final int nextState = (turn + 1) * cells + next;
+                search.offer(nextState, newCost, state, newCost + homeCost[next] * scale);
+            }
+        }
+        if (goal < 0) {
+            return null;
+        }
+
+        int first = goal;
+        for (int state = goal; state != source; state = search.parent[state]) {
+            table.reserve(state % cells, state / cells);
+            first = state;
+        }
+        return stepTowards(source, first % cells);
+    }
+
+    // Candidate moves for the move resolver: the path's first step, then the
+    // remaining direct moves towards the target as fallbacks.
+    public ArrayList<Direction> moves(final Position source, final Position target, final Player me, final int turnCost) {
+        final ArrayList<Direction> moves = map.getUnsafeMoves(source, target);
+        final Direction first = firstStep(map.index(source), map.index(target), me, turnCost);
+        if (first != Direction.STILL) {
+            moves.remove(first);
+            moves.add(0, first);
+        }
+        return moves;
+    }
+
+    private int leaveCost(final int index) {
+        return map.halite[index] / Constants.MOVE_COST_RATIO;
+    }
+
+    private int estimate(final int index, final int target, final int turnCost) {
+        return map.calculateDistance(index, target) * turnCost;
+    }
+
+    private boolean isBlocked(final int index, final Player me) {
+        final Ship ship = map.shipAt(index);
+        return ship != null && !ship.owner.equals(me.id);
+    }
+
+    private Direction stepTowards(final int from, final int to) {
+        for (final Direction direction : STEPS) {
+            if (map.neighbor(from, direction) == to) {
+                return direction;
+            }
+        }
+        return Direction.STILL;
+    }
+}
@@ -1,14 +1,22 @@
 package hlt;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.ArrayList;
 
 public class Player {
     public final PlayerId id;
     public final Shipyard shipyard;
     public int halite;
-    public final Map<EntityId, Ship> ships = new LinkedHashMap<>();
-    public final Map<EntityId, Dropoff> dropoffs = new LinkedHashMap<>();
+    // Keyed by the raw entity id, in the order the entities first appeared.
+    public final IntMap<Ship> ships = new IntMap<>();
+    public final IntMap<Dropoff> dropoffs = new IntMap<>();
+    // What changed in ships since the previous frame.
+    public final ArrayList<Ship> spawned = new ArrayList<>();
+    public final ArrayList<Ship> destroyed = new ArrayList<>();
+
+    // The same Ship object stands for a ship for as long as it lives: each frame
+    // moves it and sets its halite, so what the bot keeps on it lasts between turns.
+    // Dropoffs never move or go away, so they are only created once too.
+    private int frame;
 
     private Player(final PlayerId id, final Shipyard shipyard) {
         this.id = id;
@@ -17,32 +25,77 @@ public class Player {
 
     public void clearEnroute(GameMap gameMap) {
         if (gameMap.at(shipyard).isOccupied())
-            gameMap.at(shipyard).ship.enroute = false;
+            gameMap.at(shipyard).ship().enroute = false;
 
         for (Dropoff dropoff : dropoffs.values())
             if (gameMap.at(dropoff).isOccupied())
-                gameMap.at(dropoff).ship.enroute = false;
+                gameMap.at(dropoff).ship().enroute = false;
     }
 
-    void _update(final int numShips, final int numDropoffs, final int halite) {
+    // Entities get the map's own Position for their cell, so that parsing a frame
+    // allocates nothing for the ships that are already known.
+    void _update(final Input input, final GameMap map, final int numShips, final int numDropoffs, final int halite) {
         this.halite = halite;
+        ++frame;
+        spawned.clear();
+        destroyed.clear();
 
-        ships.clear();
         for (int i = 0; i < numShips; ++i) {
-            final Ship ship = Ship._generate(id);
-            ships.put(ship.id, ship);
+            final int shipId = input.getInt();
+            final int x = input.getInt();
+            final int y = input.getInt();
+            final int shipHalite = input.getInt();
+            final Position position = map.positionAt(map.index(x, y));
+
+            Ship ship = ships.get(shipId);
+            if (ship == null) {
+                ship = new Ship(id, new EntityId(shipId), position, shipHalite);
+                ships.put(shipId, ship);
+                spawned.add(ship);
+            } else {
+                ship._update(position, shipHalite);
+            }
+            ship.frame = frame;
+        }
+
+        for (final Ship ship : ships.values()) {
+            if (ship.frame != frame) {
+                destroyed.add(ship);
+            }
+        }
+        for (final Ship ship : destroyed) {
+            ships.remove(ship.id.id);
         }
+        ships.compact();
 
-        dropoffs.clear();
         for (int i = 0; i < numDropoffs; ++i) {
-            final Dropoff dropoff = Dropoff._generate(id);
-            dropoffs.put(dropoff.id, dropoff);
+            final int dropoffId = input.getInt();
+            final int x = input.getInt();
+            final int y = input.getInt();
+            if (!dropoffs.containsKey(dropoffId)) {
+                dropoffs.put(dropoffId, new Dropoff(id, new EntityId(dropoffId), map.positionAt(map.index(x, y))));
+            }
+        }
+
+        // a ship on one of its owner's structures has just delivered its cargo, or just been built
+        for (final Ship ship : ships.values()) {
+            ship.tripTurns = isStructure(ship.position) ? 0 : ship.tripTurns + 1;
         }
     }
 
-    static Player _generate() {
-        final Input input = Input.readInput();
+    private boolean isStructure(final Position position) {
+        if (position.equals(shipyard.position)) {
+            return true;
+        }
+        for (final Dropoff dropoff : dropoffs.values()) {
+            if (position.equals(dropoff.position)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    static Player _generate(final Input input) {
         final PlayerId playerId = new PlayerId(input.getInt());
         final int shipyard_x = input.getInt();
         final int shipyard_y = input.getInt();
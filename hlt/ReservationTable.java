@@ -0,0 +1,53 @@
+package hlt;
+
+import java.util.Arrays;
+
+// Which cells are spoken for on each of the next few turns, for planning several
+// ships' paths so they do not meet. Each turn of the horizon is a bitset over the
+// map. Plans are made afresh every turn from where the ships really are, so the
+// table is cleared at the start of each turn rather than carried over.
+public class ReservationTable {
+    private final int horizon;
+    private final int wordsPerTurn;
+    // bits[offset * wordsPerTurn + word]
+    private final long[] bits;
+
+    public ReservationTable(final int cells, final int horizon) {
+        this.horizon = horizon;
+        this.wordsPerTurn = (cells + 63) >>> 6;
+        this.bits = new long[(horizon + 1) * wordsPerTurn];
+    }
+
+    public int horizon() {
+        return horizon;
+    }
+
+    // Forgets every reservation.
+    public void clear() {
+        Arrays.fill(bits, 0L);
+    }
+
+    // offset is counted in turns from the current one, 0 being the positions at the start of it.
+    public boolean isReserved(final int index, final int offset) {
+        if (offset < 0 || offset > horizon) {
+            return false;
+        }
+        final int word = offset * wordsPerTurn + (index >>> 6);
+        return (bits[word] & (1L << index)) != 0;
+    }
+
+    public void reserve(final int index, final int offset) {
+        if (offset < 0 || offset > horizon) {
+            return;
+        }
+        final int word = offset * wordsPerTurn + (index >>> 6);
+        bits[word] |= 1L << index;
+    }
+
+    // Holds a cell for every turn of the horizon from offset on, e.g. for a ship that is staying put.
+    public void reserveFrom(final int index, final int offset) {
+        for (int t = Math.max(0, offset); t <= horizon; ++t) {
+            reserve(index, t);
+        }
+    }
+}
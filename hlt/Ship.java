@@ -3,10 +3,16 @@ package hlt;
 import java.util.ArrayList;
 
 public class Ship extends Entity {
-    public final int halite;
+    public int halite;
+    // Kept from turn to turn: set while the ship is taking its cargo home.
     public boolean enroute;
+    // Kept from turn to turn: how many turns ago the ship was last on one of its owner's structures.
+    public int tripTurns;
+    // Navigation scratch, cleared at the start of every frame.
     public boolean visited = false;
     public ArrayList<Direction> moves = new ArrayList<Direction>();
+    // The last frame this ship was in, for Player to tell which ships are gone.
+    int frame;
 
     public Ship(final PlayerId owner, final EntityId id, final Position position, final int halite) {
         super(owner, id, position);
@@ -29,32 +35,28 @@ public class Ship extends Entity {
         return Command.move(id, Direction.STILL);
     }
 
-    static Ship _generate(final PlayerId playerId) {
-        final Input input = Input.readInput();
-
-        final EntityId shipId = new EntityId(input.getInt());
-        final int x = input.getInt();
-        final int y = input.getInt();
-        final int halite = input.getInt();
-
-        return new Ship(playerId, shipId, new Position(x, y), halite);
+    // Moves the ship to where this frame has it (the map's Position for the cell),
+    // and starts its navigation afresh.
+    void _update(final Position position, final int halite) {
+        this.position = position;
+        this.halite = halite;
+        visited = false;
+        moves.clear();
     }
 
+    // A ship is the same ship wherever it is and whatever it carries.
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
 
         Ship ship = (Ship) o;
 
-        return halite == ship.halite;
+        return owner.equals(ship.owner) && id.equals(ship.id);
     }
 
     @Override
     public int hashCode() {
-        int result = super.hashCode();
-        result = 31 * result + halite;
-        return result;
+        return 31 * owner.hashCode() + id.hashCode();
     }
 }
@@ -0,0 +1,31 @@
+package hlt;
+
+// Measures time spent on the current turn against the engine's per-turn budget.
+// Game starts it as soon as updateFrame has read the frame.
+public class TurnClock {
+    /** The engine kills a bot that takes longer than this to answer a turn. */
+    public static final long TURN_BUDGET_MILLIS = 2000;
+
+    private final long budgetNanos;
+    private long startNanos = System.nanoTime();
+
+    public TurnClock(final long budgetMillis) {
+        this.budgetNanos = budgetMillis * 1_000_000L;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos() / 1_000_000L;
+    }
+
+    public long remainingMillis() {
+        return (budgetNanos - elapsedNanos()) / 1_000_000L;
+    }
+}
@@ -0,0 +1,190 @@
+package hlt;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Records, for every turn, the wall time and the bytes allocated by the calling
+// thread in named phases of the turn (parsing, planning stages, output).
+// Work the phase hands to other threads, such as ParallelPlanner, shows up in
+// its wall time but not in its allocations.
+//
+// In TRACE mode every sample is written to bot-<id>-metrics.csv as
+// turn,phase,wall_us,alloc_bytes; in TRACE and SUMMARY mode the p50/p99/max of
+// each phase go to the bot log. Both happen once, after the last turn.
+public class TurnMetrics {
+    public enum Mode { OFF, SUMMARY, TRACE }
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private Mode mode = Mode.OFF;
+    private String traceFile;
+    private boolean written;
+    private int turn;
+
+    private final ArrayList<String> phases = new ArrayList<>();
+    private long[] startNanos = new long[0];
+    private long[] startBytes = new long[0];
+    // Per phase, one entry per end() call, in the order they happened.
+    private final ArrayList<long[]> turns = new ArrayList<>();
+    private final ArrayList<long[]> wallNanos = new ArrayList<>();
+    private final ArrayList<long[]> allocatedBytes = new ArrayList<>();
+    private int[] counts = new int[0];
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            final com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        } catch (final RuntimeException | LinkageError e) {
+            // Not HotSpot: only wall time is recorded.
+        }
+        return null;
+    }
+
+    // Starts recording for the given player. The mode can be overridden with -Dhlt.metrics=off|summary|trace;
+    // any other value is logged and ignored, since a typo must not cost the game.
+    public void open(final int playerId, final Mode defaultMode) {
+        mode = defaultMode;
+        final String requested = System.getProperty("hlt.metrics");
+        if (requested != null) {
+            try {
+                mode = Mode.valueOf(requested.trim().toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                Log.log("Metrics: unknown mode '" + requested + "', using " + defaultMode.name().toLowerCase() + ".");
+            }
+        }
+        traceFile = "bot-" + playerId + "-metrics.csv";
+        if (mode != Mode.OFF) {
+            Log.atExit(this::write);
+        }
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.OFF;
+    }
+
+    public void startTurn(final int turnNumber) {
+        turn = turnNumber;
+    }
+
+    public void begin(final String phase) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        final int id = phaseId(phase);
+        startBytes[id] = allocatedBytes();
+        startNanos[id] = System.nanoTime();
+    }
+
+    public void end(final String phase) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long bytes = allocatedBytes();
+        final int id = phaseId(phase);
+
+        final int count = counts[id];
+        if (count == turns.get(id).length) {
+            final int capacity = Math.max(16, count * 2);
+            turns.set(id, Arrays.copyOf(turns.get(id), capacity));
+            wallNanos.set(id, Arrays.copyOf(wallNanos.get(id), capacity));
+            allocatedBytes.set(id, Arrays.copyOf(allocatedBytes.get(id), capacity));
+        }
+        turns.get(id)[count] = turn;
+        wallNanos.get(id)[count] = now - startNanos[id];
+        allocatedBytes.get(id)[count] = bytes - startBytes[id];
+        counts[id] = count + 1;
+    }
+
+    // Writes the trace and the summary. Only the first call does anything, so this
+    // can run both after the last turn and when the bot exits early.
+    public synchronized void write() {
+        if (mode == Mode.OFF || written) {
+            return;
+        }
+        written = true;
+
+        if (mode == Mode.TRACE) {
+            writeTrace();
+        }
+
+        Log.log("Turn metrics: phase, samples, wall ms p50/p99/max, allocated KB p50/p99/max");
+        for (int id = 0; id < phases.size(); ++id) {
+            if (counts[id] == 0) {
+                continue;
+            }
+            final long[] wall = Arrays.copyOf(wallNanos.get(id), counts[id]);
+            final long[] bytes = Arrays.copyOf(allocatedBytes.get(id), counts[id]);
+            Arrays.sort(wall);
+            Arrays.sort(bytes);
+            Log.log(String.format("  %-16s %5d  %8.3f %8.3f %8.3f  %9.1f %9.1f %9.1f",
+                    phases.get(id), counts[id],
+                    percentile(wall, 0.50) / 1e6, percentile(wall, 0.99) / 1e6, wall[wall.length - 1] / 1e6,
+                    percentile(bytes, 0.50) / 1024.0, percentile(bytes, 0.99) / 1024.0, bytes[bytes.length - 1] / 1024.0));
+        }
+    }
+
+    // Rows come out in turn order; each phase's samples are already in turn order.
+    private void writeTrace() {
+        try (final Writer writer = new BufferedWriter(new FileWriter(traceFile))) {
+            writer.write("turn,phase,wall_us,alloc_bytes\n");
+            final int[] next = new int[phases.size()];
+            while (true) {
+                int id = -1;
+                for (int candidate = 0; candidate < next.length; ++candidate) {
+                    if (next[candidate] < counts[candidate]
+                            && (id < 0 || turns.get(candidate)[next[candidate]] < turns.get(id)[next[id]])) {
+                        id = candidate;
+                    }
+                }
+                if (id < 0) {
+                    break;
+                }
+
+                final int i = next[id]++;
+                writer.append(Long.toString(turns.get(id)[i])).append(',')
+                        .append(phases.get(id)).append(',')
+                        .append(Long.toString(wallNanos.get(id)[i] / 1000)).append(',')
+                        .append(Long.toString(allocatedBytes.get(id)[i])).append('\n');
+            }
+        } catch (final IOException e) {
+            Log.log("Error: metrics: could not write " + traceFile + ": " + e);
+        }
+    }
+
+    // Nearest-rank percentile of a sorted sample.
+    private static long percentile(final long[] sorted, final double q) {
+        final int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private int phaseId(final String phase) {
+        for (int id = 0; id < phases.size(); ++id) {
+            if (phases.get(id).equals(phase)) {
+                return id;
+            }
+        }
+
+        phases.add(phase);
+        turns.add(new long[0]);
+        wallNanos.add(new long[0]);
+        allocatedBytes.add(new long[0]);
+        startNanos = Arrays.copyOf(startNanos, phases.size());
+        startBytes = Arrays.copyOf(startBytes, phases.size());
+        counts = Arrays.copyOf(counts, phases.size());
+        return phases.size() - 1;
+    }
+}
@@ -0,0 +1,96 @@
+package hlt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Runs the planning for a turn as a series of stages, each of which builds a
+// complete command list. The list from the last stage that finished is what gets
+// sent, so there is always a valid answer ready. A stage is skipped once the
+// clock is inside the safety margin, or when its estimated time says it would
+// not finish before the margin. Each stage also gets the Deadline, so that it can
+// cut its plan short inside the margin instead of finishing late.
+public class TurnScheduler {
+    public interface Stage {
+        // Must still leave a complete command list in commands when the deadline passes.
+        void plan(ArrayList<Command> commands, Deadline deadline);
+    }
+
+    // What a stage sees of the clock. Safe to check from the planner's threads.
+    public static final class Deadline {
+        private final TurnClock clock;
+        private final long safetyMarginMillis;
+        private volatile boolean reached;
+
+        Deadline(final TurnClock clock, final long safetyMarginMillis) {
+            this.clock = clock;
+            this.safetyMarginMillis = safetyMarginMillis;
+        }
+
+        // True once the clock is inside the safety margin; the stage should wrap up.
+        public boolean passed() {
+            if (!reached && clock.remainingMillis() <= safetyMarginMillis) {
+                reached = true;
+            }
+            return reached;
+        }
+    }
+
+    private final TurnClock clock;
+    private final long safetyMarginMillis;
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<Stage> stages = new ArrayList<>();
+    // Running average of each stage's time, halved every turn the stage is skipped
+    // so that one slow turn does not keep it from running for the rest of the game.
+    private long[] estimateMillis = new long[0];
+
+    public TurnScheduler(final TurnClock clock, final long safetyMarginMillis) {
+        this.clock = clock;
+        this.safetyMarginMillis = safetyMarginMillis;
+    }
+
+    // Stages run in the order they are added, so add the cheapest, safest plan first.
+    public TurnScheduler addStage(final String name, final Stage stage) {
+        names.add(name);
+        stages.add(stage);
+        estimateMillis = Arrays.copyOf(estimateMillis, stages.size());
+        return this;
+    }
+
+    public ArrayList<Command> run() {
+        ArrayList<Command> best = new ArrayList<>();
+
+        for (int i = 0; i < stages.size(); ++i) {
+            final long available = clock.remainingMillis() - safetyMarginMillis;
+            if (i > 0 && available <= estimateMillis[i]) {
+                Log.log("Scheduler: skipping stage '" + names.get(i) + "' with " + available +
+                        "ms left before the safety margin (estimated " + estimateMillis[i] + "ms).");
+                estimateMillis[i] /= 2;
+                break;
+            }
+
+            final long startMillis = clock.elapsedMillis();
+            final ArrayList<Command> commands = new ArrayList<>();
+            final Deadline deadline = new Deadline(clock, safetyMarginMillis);
+            try {
+                stages.get(i).plan(commands, deadline);
+            } catch (final RuntimeException e) {
+                Log.log("Scheduler: stage '" + names.get(i) + "' failed: " + e);
+                break;
+            }
+
+            // a stage cut short ran as long as it was let, not as long as it needed
+            if (deadline.reached) {
+                Log.log("Scheduler: stage '" + names.get(i) + "' was cut short by the deadline.");
+            } else {
+                final long took = clock.elapsedMillis() - startMillis;
+                estimateMillis[i] = estimateMillis[i] == 0 ? took : (estimateMillis[i] + took) / 2;
+            }
+            if (clock.remainingMillis() < 0) {
+                Log.log("Scheduler: stage '" + names.get(i) + "' finished past the turn budget.");
+            }
+            best = commands;
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,224 @@
+package hlt.sim;
+
+import hlt.Command;
+import hlt.IntSet;
+import hlt.Log;
+import hlt.Ship;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Microbenchmarks for the GameMap hot paths and the frame parser, run against
+// MapFixture positions at every official map size with two and four players,
+// with mid-game and late-game fleets.
+//
+//     java hlt.sim.Benchmarks [--filter name] [--sizes 32,64] [--players 2,4] [--fleets mid,late]
+//                             [--warmup 3] [--iterations 5] [--millis 200]
+//                             [--csv out.csv] [--baseline old.csv]
+//
+// Each iteration runs operations for a fixed time and yields the mean time per
+// operation; the report is the mean and standard deviation over the measured
+// iterations. Results are consumed into a volatile sink so the JIT cannot drop
+// the work. Save a run with --csv and pass it as --baseline to a later run to
+// get the ratio against it for every row.
+//
+// This runner needs nothing beyond the bot's own classes. The JMH benchmarks in
+// jmh/ cover the same operations with forked JVMs; see build.gradle.
+public class Benchmarks {
+    // One operation, given a running counter to pick different inputs each time.
+    interface Benchmark {
+        long run(MapFixture fixture, int op);
+    }
+
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+    private static final IntSet SHIPS_TO_MOVE = new IntSet();
+    private static final ArrayList<Command> COMMANDS = new ArrayList<>();
+
+    static {
+        BENCHMARKS.put("highestValueLocation", (fixture, op) -> {
+            final Ship ship = fixture.ships[op % fixture.ships.length];
+            return fixture.map.highestValueLocation(ship, fixture.me).hashCode();
+        });
+        BENCHMARKS.put("calculateDistance", (fixture, op) -> {
+            final int pair = op & (fixture.from.length - 1);
+            return fixture.map.calculateDistance(fixture.from[pair], fixture.to[pair]);
+        });
+        BENCHMARKS.put("getUnsafeMoves", (fixture, op) -> {
+            final int pair = op & (fixture.from.length - 1);
+            return fixture.map.getUnsafeMoves(fixture.from[pair], fixture.to[pair]).size();
+        });
+        // One operation settles my whole fleet's moves, as the bot does every turn,
+        // reserving them in an overlay that is then dropped.
+        BENCHMARKS.put("resolveMoves(fleet)", (fixture, op) -> {
+            fixture.prepareMoves(SHIPS_TO_MOVE);
+            COMMANDS.clear();
+            fixture.map.resolveMoves(fixture.map.overlay(), fixture.shipList, COMMANDS);
+            return COMMANDS.size();
+        });
+        // The ship-by-ship navigation resolveMoves replaced, kept to compare against.
+        // One operation navigates my whole fleet, including putting the map back first.
+        BENCHMARKS.put("newNavigate(fleet)", (fixture, op) -> {
+            fixture.restoreOccupancy();
+            fixture.prepareMoves(SHIPS_TO_MOVE);
+            COMMANDS.clear();
+            for (final Ship ship : fixture.ships) {
+                if (SHIPS_TO_MOVE.contains(ship.id.id)) {
+                    fixture.map.newNavigate(ship, SHIPS_TO_MOVE, COMMANDS);
+                }
+            }
+            return COMMANDS.size();
+        });
+        BENCHMARKS.put("markEnemyShips", (fixture, op) -> {
+            fixture.map.markEnemyShips(fixture.me, fixture.game.players);
+            return fixture.map.occupantId[op % fixture.map.occupantId.length];
+        });
+        BENCHMARKS.put("updateFrame", (fixture, op) -> {
+            fixture.replayTurn();
+            return fixture.game.turnNumber;
+        });
+    }
+
+    private static volatile long sink;
+
+    public static void main(final String[] args) throws IOException {
+        String filter = "";
+        int[] sizes = MapFixture.SIZES;
+        int[] playerCounts = { 2, 4 };
+        MapFixture.Fleet[] fleets = MapFixture.Fleet.values();
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 200;
+        String csv = null;
+        String baseline = null;
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--filter": filter = args[++i]; break;
+                case "--sizes": sizes = parseInts(args[++i]); break;
+                case "--players": playerCounts = parseInts(args[++i]); break;
+                case "--fleets": fleets = parseFleets(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--millis": millis = Long.parseLong(args[++i]); break;
+                case "--csv": csv = args[++i]; break;
+                case "--baseline": baseline = args[++i]; break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Log.disable();
+        final Map<String, Double> baselineMeans = baseline == null ? new HashMap<>() : readBaseline(baseline);
+        final List<String> rows = new ArrayList<>();
+
+        System.out.printf("%-22s %-22s %14s %12s %10s%n", "benchmark", "fixture", "ns/op", "stdev", "baseline");
+        for (final Map.Entry<String, Benchmark> entry : BENCHMARKS.entrySet()) {
+            if (!entry.getKey().contains(filter)) {
+                continue;
+            }
+
+            for (final int size : sizes) {
+                for (final int playerCount : playerCounts) {
+                    for (final MapFixture.Fleet fleet : fleets) {
+                        final MapFixture fixture = new MapFixture(size * 31L + playerCount, size, playerCount, fleet);
+                        final double[] samples = measure(entry.getValue(), fixture, warmup, iterations, millis * 1_000_000);
+
+                        double mean = 0;
+                        for (final double sample : samples) {
+                            mean += sample / samples.length;
+                        }
+                        double variance = 0;
+                        for (final double sample : samples) {
+                            variance += (sample - mean) * (sample - mean) / Math.max(1, samples.length - 1);
+                        }
+
+                        final String key = entry.getKey() + "," + size + "," + playerCount + "," + fixture.shipsPerPlayer;
+                        final Double before = baselineMeans.get(key);
+                        System.out.printf("%-22s %-22s %14.1f %12.1f %10s%n", entry.getKey(), fixture, mean, Math.sqrt(variance),
+                                before == null ? "-" : String.format("%.2fx", mean / before));
+                        rows.add(String.format("%s,%.1f,%.1f", key, mean, Math.sqrt(variance)));
+                    }
+                }
+            }
+        }
+
+        if (csv != null) {
+            try (final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(csv), StandardCharsets.UTF_8))) {
+                writer.println("benchmark,size,players,ships_per_player,mean_ns,stdev_ns");
+                rows.forEach(writer::println);
+            }
+        }
+    }
+
+    // Returns the nanoseconds per operation of each measured iteration.
+    private static double[] measure(final Benchmark benchmark, final MapFixture fixture,
+                                    final int warmup, final int iterations, final long iterationNanos) {
+        final double[] samples = new double[iterations];
+        int op = 0;
+
+        for (int iteration = -warmup; iteration < iterations; ++iteration) {
+            long sum = 0;
+            long operations = 0;
+            // Reading the clock after every call would swamp the cheap benchmarks,
+            // so calls are made in batches that grow until one takes a visible time.
+            int batch = 1;
+            final long start = System.nanoTime();
+            long elapsed;
+            do {
+                final long batchStart = System.nanoTime();
+                for (int i = 0; i < batch; ++i) {
+                    sum += benchmark.run(fixture, op++);
+                }
+                operations += batch;
+                final long now = System.nanoTime();
+                if (now - batchStart < iterationNanos / 100 && batch < 1 << 20) {
+                    batch *= 2;
+                }
+                elapsed = now - start;
+            } while (elapsed < iterationNanos);
+
+            sink += sum;
+            if (iteration >= 0) {
+                samples[iteration] = (double) elapsed / operations;
+            }
+        }
+        return samples;
+    }
+
+    private static Map<String, Double> readBaseline(final String file) throws IOException {
+        final Map<String, Double> means = new HashMap<>();
+        final List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        for (final String line : lines.subList(1, lines.size())) {
+            final String[] fields = line.split(",");
+            means.put(fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3], Double.parseDouble(fields[4]));
+        }
+        return means;
+    }
+
+    private static MapFixture.Fleet[] parseFleets(final String list) {
+        final String[] parts = list.split(",");
+        final MapFixture.Fleet[] fleets = new MapFixture.Fleet[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            fleets[i] = MapFixture.Fleet.valueOf(parts[i].trim().toUpperCase());
+        }
+        return fleets;
+    }
+
+    private static int[] parseInts(final String list) {
+        final String[] parts = list.split(",");
+        final int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
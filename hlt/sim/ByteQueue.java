@@ -0,0 +1,89 @@
+package hlt.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// An in-memory pipe between the simulator and one bot. Everything runs on one
+// thread, so a read that finds nothing queued means the bot asked for more
+// input than the simulator sent, which is reported as end of stream.
+class ByteQueue implements ReadableByteChannel, WritableByteChannel {
+    private byte[] data = new byte[1 << 14];
+    private int head;
+    private int tail;
+
+    @Override
+    public int read(final ByteBuffer dst) {
+        if (head == tail) {
+            return -1;
+        }
+
+        final int count = Math.min(dst.remaining(), tail - head);
+        dst.put(data, head, count);
+        head += count;
+        if (head == tail) {
+            head = tail = 0;
+        }
+        return count;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) {
+        final int count = src.remaining();
+        ensureCapacity(count);
+        src.get(data, tail, count);
+        tail += count;
+        return count;
+    }
+
+    void write(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, data, tail, bytes.length);
+        tail += bytes.length;
+    }
+
+    // Returns the next complete line without its terminator, or null if there is none.
+    String readLine() {
+        for (int i = head; i < tail; ++i) {
+            if (data[i] == '\n') {
+                final String line = new String(data, head, i - head, StandardCharsets.US_ASCII);
+                head = i + 1;
+                if (head == tail) {
+                    head = tail = 0;
+                }
+                return line;
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        head = tail = 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void ensureCapacity(final int count) {
+        if (tail + count <= data.length) {
+            return;
+        }
+
+        if (head > 0) {
+            System.arraycopy(data, head, data, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        if (tail + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, tail + count));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hlt.sim;
+
+import hlt.Constants;
+import hlt.GameMap;
+import hlt.Log;
+import hlt.Player;
+import hlt.Position;
+import hlt.Ship;
+
+import java.util.Random;
+
+// Checks the incremental structures of GameMap against the straightforward
+// computations they replaced, on the benchmark fixtures with random changes
+// applied turn after turn.
+//
+//     java hlt.sim.EquivalenceCheck [--seeds N] [--rounds R]
+//
+// For every seed, map size and player count, R rounds each change the halite of
+// a random tenth of the cells through setHalite, flip the inspiration of a few
+// through setInspired, and compare every one of my ships' highestValueLocation
+// with a full scan of the map. Every other round also scatters all ships at
+// random, recomputes the inspiration through updateInspiration and compares
+// every cell with a count of the enemy ships around it. Prints the first
+// mismatch and exits with status 1 if there is one.
+public class EquivalenceCheck {
+    private static int failures;
+
+    public static void main(final String[] args) {
+        int seeds = 5;
+        int rounds = 20;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--seeds": seeds = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("usage: EquivalenceCheck [--seeds N] [--rounds R]");
+                    System.exit(1);
+            }
+        }
+
+        Log.disable();
+        long targets = 0;
+        long inspirations = 0;
+        for (int seed = 1; seed <= seeds; ++seed) {
+            for (final int size : MapFixture.SIZES) {
+                for (final int numPlayers : new int[] { 2, 4 }) {
+                    final MapFixture fixture = new MapFixture(seed, size, numPlayers);
+                    final Random rng = new Random(seed * 1000003L + size * 31 + numPlayers);
+                    for (int round = 0; round < rounds && failures == 0; ++round) {
+                        changeHalite(fixture.map, rng);
+                        if (round % 2 == 1) {
+                            scatterShips(fixture, rng);
+                            inspirations += checkInspiration(fixture);
+                        }
+                        fixture.map.prepareConcurrentReads();
+                        targets += checkTargets(fixture);
+                    }
+                    if (failures > 0) {
+                        System.out.println("FAILED on " + fixture + ", seed " + seed);
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+        System.out.printf("ok: %d targets, %d inspiration fields%n", targets, inspirations);
+    }
+
+    // A random tenth of the cells, some mined out and some left full, and the
+    // inspiration of a few cells flipped.
+    private static void changeHalite(final GameMap map, final Random rng) {
+        final int cells = map.width * map.height;
+        for (int i = 0; i < cells / 10; ++i) {
+            final int index = rng.nextInt(cells);
+            map.setHalite(index, rng.nextInt(4) == 0 ? 0 : rng.nextInt(Constants.MAX_HALITE + 1));
+        }
+        for (int i = 0; i < cells / 50; ++i) {
+            final int index = rng.nextInt(cells);
+            map.setInspired(index, !map.inspired.get(index));
+        }
+    }
+
+    // Moves every ship of every player to a random cell. Only the positions change,
+    // which is all updateInspiration and highestValueLocation read.
+    private static void scatterShips(final MapFixture fixture, final Random rng) {
+        final GameMap map = fixture.map;
+        for (final Player player : fixture.game.players) {
+            for (final Ship ship : player.ships.values()) {
+                ship.position = map.positionAt(rng.nextInt(map.width * map.height));
+            }
+        }
+    }
+
+    private static int checkInspiration(final MapFixture fixture) {
+        final GameMap map = fixture.map;
+        map.updateInspiration(fixture.me, fixture.game.players);
+        for (int index = 0; index < map.width * map.height; ++index) {
+            int nearby = 0;
+            for (final Player player : fixture.game.players) {
+                if (player == fixture.me) {
+                    continue;
+                }
+                for (final Ship ship : player.ships.values()) {
+                    if (torusDistance(map, index, map.index(ship.position)) <= Constants.INSPIRATION_RADIUS) {
+                        ++nearby;
+                    }
+                }
+            }
+            final boolean expected = nearby >= Constants.INSPIRATION_SHIP_COUNT;
+            if (map.inspired.get(index) != expected) {
+                System.out.println("inspired at " + format(map.positionAt(index)) + ": " + map.inspired.get(index)
+                        + ", " + nearby + " enemy ships within " + Constants.INSPIRATION_RADIUS);
+                ++failures;
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private static int checkTargets(final MapFixture fixture) {
+        final GameMap map = fixture.map;
+        for (final Ship ship : fixture.me.ships.values()) {
+            final Position expected = scanTarget(map, ship);
+            final Position actual = map.highestValueLocation(ship, fixture.me);
+            if (!expected.equals(actual)) {
+                System.out.println("highestValueLocation for ship " + ship.id.id + " at " + format(ship.position)
+                        + ": " + format(actual) + ", a full scan gives " + format(expected));
+                ++failures;
+                return 0;
+            }
+        }
+        return fixture.me.ships.size();
+    }
+
+    // The full-map scan highestValueLocation used before the block index: every
+    // other cell scores halite / distance, doubled after the division when
+    // inspired, against staying put; ties go to the largest x, then the largest y.
+    private static Position scanTarget(final GameMap map, final Ship ship) {
+        final int shipIndex = map.index(ship.position);
+        int bestVal = ((map.halite[shipIndex] / Constants.EXTRACT_RATIO) + (map.halite[shipIndex] / Constants.MOVE_COST_RATIO)) * 6;
+        int bestIndex = shipIndex;
+        int bestX = -1;
+        for (int y = 0, i = 0; y < map.height; ++y) {
+            for (int x = 0; x < map.width; ++x, ++i) {
+                if (i == shipIndex) {
+                    continue;
+                }
+                final int distance = torusDistance(map, shipIndex, i);
+                final int value = map.inspired.get(i) ? map.halite[i] / distance * 2 : map.halite[i] / distance;
+                if (value > bestVal || (value == bestVal && x >= bestX)) {
+                    bestVal = value;
+                    bestIndex = i;
+                    bestX = x;
+                }
+            }
+        }
+        return bestIndex == shipIndex ? ship.position : map.positionAt(bestIndex);
+    }
+
+    private static int torusDistance(final GameMap map, final int a, final int b) {
+        final int dx = Math.abs(a % map.width - b % map.width);
+        final int dy = Math.abs(a / map.width - b / map.width);
+        return Math.min(dx, map.width - dx) + Math.min(dy, map.height - dy);
+    }
+
+    private static String format(final Position position) {
+        return "(" + position.x + ", " + position.y + ")";
+    }
+}
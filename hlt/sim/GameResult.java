@@ -0,0 +1,52 @@
+package hlt.sim;
+
+// Outcome of one simulated game, indexed by player id.
+public class GameResult {
+    public final long seed;
+    public final int mapSize;
+    public final int turns;
+    public final String[] botNames;
+    public final int[] finalHalite;
+    public final int[] rank;
+    public final int[] shipsBuilt;
+    // Why a player was removed from the game, or null if it played to the end.
+    public final String[] errors;
+    // turnNanos[player][turn - 1] is how long the bot took to answer that turn.
+    public final long[][] turnNanos;
+
+    GameResult(final long seed, final int mapSize, final int turns, final String[] botNames, final int[] finalHalite,
+               final int[] rank, final int[] shipsBuilt, final String[] errors, final long[][] turnNanos) {
+        this.seed = seed;
+        this.mapSize = mapSize;
+        this.turns = turns;
+        this.botNames = botNames;
+        this.finalHalite = finalHalite;
+        this.rank = rank;
+        this.shipsBuilt = shipsBuilt;
+        this.errors = errors;
+        this.turnNanos = turnNanos;
+    }
+
+    public int winner() {
+        for (int player = 0; player < rank.length; ++player) {
+            if (rank[player] == 1) {
+                return player;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("seed ").append(seed).append(' ').append(mapSize).append('x').append(mapSize);
+        for (int player = 0; player < rank.length; ++player) {
+            builder.append(" | #").append(rank[player]).append(' ').append(botNames[player])
+                    .append(" (").append(player).append(") ").append(finalHalite[player]);
+            if (errors[player] != null) {
+                builder.append(" [").append(errors[player]).append(']');
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package hlt.sim;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for replay files. Objects come back as Map<String, Object>,
+// arrays as List<Object>, numbers as Long when they are whole and Double
+// otherwise, and true, false and null as themselves.
+final class Json {
+    private final String text;
+    private int pos;
+
+    private Json(final String text) {
+        this.text = text;
+    }
+
+    static Object parse(final String text) {
+        final Json json = new Json(text);
+        final Object value = json.value();
+        json.skipSpace();
+        if (json.pos != text.length()) {
+            throw json.error("trailing characters");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(final Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> array(final Object value) {
+        return (List<Object>) value;
+    }
+
+    static int integer(final Object value) {
+        return ((Number) value).intValue();
+    }
+
+    // A flat object on one line, as the engine sends the game constants.
+    static String write(final Map<String, Object> object) {
+        final StringBuilder builder = new StringBuilder("{");
+        for (final Map.Entry<String, Object> entry : object.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append('"').append(entry.getKey()).append("\":");
+            if (entry.getValue() instanceof String) {
+                builder.append('"').append(entry.getValue()).append('"');
+            } else {
+                builder.append(entry.getValue());
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= text.length()) {
+            throw error("unexpected end");
+        }
+        final char c = text.charAt(pos);
+        switch (c) {
+            case '{': return objectValue();
+            case '[': return arrayValue();
+            case '"': return stringValue();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return numberValue();
+        }
+    }
+
+    private Map<String, Object> objectValue() {
+        final Map<String, Object> object = new LinkedHashMap<>();
+        ++pos;
+        skipSpace();
+        if (peek() == '}') {
+            ++pos;
+            return object;
+        }
+        while (true) {
+            skipSpace();
+            final String key = stringValue();
+            skipSpace();
+            expect(':');
+            object.put(key, value());
+            skipSpace();
+            if (peek() == ',') {
+                ++pos;
+                continue;
+            }
+            expect('}');
+            return object;
+        }
+    }
+
+    private List<Object> arrayValue() {
+        final List<Object> array = new ArrayList<>();
+        ++pos;
+        skipSpace();
+        if (peek() == ']') {
+            ++pos;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipSpace();
+            if (peek() == ',') {
+                ++pos;
+                continue;
+            }
+            expect(']');
+            return array;
+        }
+    }
+
+    private String stringValue() {
+        expect('"');
+        final StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("unterminated string");
+            }
+            final char c = text.charAt(pos++);
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            final char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: builder.append(escaped); break;
+            }
+        }
+    }
+
+    private Object numberValue() {
+        final int start = pos;
+        boolean whole = true;
+        while (pos < text.length()) {
+            final char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                whole = false;
+            } else if (c != '-' && c != '+' && (c < '0' || c > '9')) {
+                break;
+            }
+            ++pos;
+        }
+        if (start == pos) {
+            throw error("unexpected character '" + text.charAt(pos) + "'");
+        }
+        final String number = text.substring(start, pos);
+        return whole ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+    }
+
+    private Object literal(final String word, final Object value) {
+        if (!text.startsWith(word, pos)) {
+            throw error("unexpected character '" + text.charAt(pos) + "'");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+    }
+
+    private void expect(final char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+        ++pos;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException("JSON: " + message + " at offset " + pos);
+    }
+}
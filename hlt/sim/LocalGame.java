@@ -0,0 +1,586 @@
+package hlt.sim;
+
+import hlt.Bot;
+import hlt.Game;
+import hlt.Input;
+import hlt.Output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+// One game of Halite III played entirely in this JVM. Each bot gets its own
+// hlt.Game wired to in-memory pipes, so it sees exactly the byte protocol the
+// real engine speaks, and the rules from docs/game-overview.md are applied here:
+// move costs, 25% extraction, inspiration, collisions, dropoffs and spawning.
+public class LocalGame {
+    static final int INITIAL_HALITE = 5000;
+    static final int SHIP_COST = 1000;
+    static final int DROPOFF_COST = 4000;
+    static final int MAX_HALITE = 1000;
+    static final int EXTRACT_RATIO = 4;
+    static final int MOVE_COST_RATIO = 10;
+    static final int INSPIRATION_RADIUS = 4;
+    static final int INSPIRATION_SHIP_COUNT = 2;
+    static final int INSPIRED_EXTRACT_RATIO = 4;
+    static final double INSPIRED_BONUS_MULTIPLIER = 2.0;
+    static final int INSPIRED_MOVE_COST_RATIO = 10;
+
+    private static final class SimShip {
+        final int id;
+        int cell;
+        int halite;
+        boolean inspired;
+        boolean mining;
+        boolean destroyed;
+
+        SimShip(final int id, final int cell) {
+            this.id = id;
+            this.cell = cell;
+        }
+    }
+
+    private static final class SimPlayer {
+        final int id;
+        final Bot bot;
+        final int shipyard;
+        final ByteQueue toBot = new ByteQueue();
+        final ByteQueue fromBot = new ByteQueue();
+        final ArrayList<SimShip> ships = new ArrayList<>();
+        final ArrayList<int[]> dropoffs = new ArrayList<>();
+        Game game;
+        String name;
+        int halite = INITIAL_HALITE;
+        int shipsBuilt;
+        String error;
+
+        SimPlayer(final int id, final Bot bot, final int shipyard) {
+            this.id = id;
+            this.bot = bot;
+            this.shipyard = shipyard;
+        }
+    }
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final int maxTurns;
+    private final int[] halite;
+    private final int[] sentHalite;
+    private final int[] structureOwner;
+    private final SimPlayer[] players;
+    private final long[][] turnNanos;
+    private int nextEntityId;
+    // The replay's map and frames so far, when recording; see recordReplay.
+    private String replayMap;
+    private StringBuilder replayFrames;
+    private StringBuilder replayEvents;
+    private int[] replayHalite;
+
+    public LocalGame(final long seed, final int size, final List<? extends Bot> bots) {
+        if (bots.size() != 2 && bots.size() != 4) {
+            throw new IllegalArgumentException("Halite is played by 2 or 4 players, not " + bots.size());
+        }
+
+        this.seed = seed;
+        this.width = size;
+        this.height = size;
+        this.maxTurns = maxTurns(size);
+
+        final Random rng = new Random(seed);
+        halite = MapGenerator.generate(rng, width, height, bots.size());
+        structureOwner = new int[width * height];
+        Arrays.fill(structureOwner, -1);
+
+        final int[] shipyards = MapGenerator.shipyards(width, height, bots.size());
+        players = new SimPlayer[bots.size()];
+        for (int id = 0; id < players.length; ++id) {
+            players[id] = new SimPlayer(id, bots.get(id), shipyards[id]);
+            halite[shipyards[id]] = 0;
+            structureOwner[shipyards[id]] = id;
+        }
+        sentHalite = halite.clone();
+        turnNanos = new long[players.length][maxTurns];
+    }
+
+    // 400 turns on 32x32 up to 500 turns on 64x64, as the engine does.
+    static int maxTurns(final int size) {
+        return 300 + 25 * size / 8;
+    }
+
+    // Keeps a replay of the game in the engine's JSON layout, for writeReplay once it has been played.
+    public LocalGame recordReplay() {
+        final StringBuilder grid = new StringBuilder();
+        grid.append("{\"width\":").append(width).append(",\"height\":").append(height).append(",\"grid\":[");
+        for (int y = 0; y < height; ++y) {
+            grid.append(y == 0 ? "[" : ",[");
+            for (int x = 0; x < width; ++x) {
+                grid.append(x == 0 ? "" : ",").append("{\"energy\":").append(halite[y * width + x]).append('}');
+            }
+            grid.append(']');
+        }
+        replayMap = grid.append("]}").toString();
+        replayHalite = halite.clone();
+        replayEvents = new StringBuilder();
+        replayFrames = new StringBuilder();
+        recordFrame();
+        return this;
+    }
+
+    // Uncompressed, so Replay reads it without the zstd command.
+    public void writeReplay(final Path file) throws IOException {
+        if (replayFrames == null) {
+            throw new IllegalStateException("recordReplay was not called before play");
+        }
+        final StringBuilder json = new StringBuilder();
+        json.append("{\"ENGINE_VERSION\":\"hlt.sim\",\"REPLAY_FILE_VERSION\":3");
+        json.append(",\"GAME_CONSTANTS\":").append(constantsLine(seed, maxTurns));
+        json.append(",\"map_generator_seed\":").append(seed);
+        json.append(",\"number_of_players\":").append(players.length);
+        json.append(",\"players\":[");
+        for (final SimPlayer player : players) {
+            json.append(player.id == 0 ? "{" : ",{").append("\"player_id\":").append(player.id)
+                    .append(",\"name\":\"").append(player.name == null ? "" : player.name.replace("\"", "'"))
+                    .append("\",\"factory_location\":").append(location(player.shipyard)).append('}');
+        }
+        json.append("],\"production_map\":").append(replayMap);
+        json.append(",\"full_frames\":[").append(replayFrames).append("]}");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public GameResult play() {
+        for (final SimPlayer player : players) {
+            player.toBot.write(initialFrame(player.id));
+            try {
+                player.game = new Game(new Input(player.toBot), new Output(player.fromBot));
+                player.bot.init(player.game);
+                player.game.ready(player.bot.name());
+                player.name = player.fromBot.readLine();
+            } catch (final RuntimeException e) {
+                eliminate(player, "failed to start: " + e);
+            }
+        }
+
+        for (int turn = 1; turn <= maxTurns; ++turn) {
+            final byte[] frame = turnFrame(turn);
+            final ArrayList<String> commandLines = new ArrayList<>();
+
+            for (final SimPlayer player : players) {
+                commandLines.add(null);
+                if (player.error != null) {
+                    continue;
+                }
+
+                player.toBot.write(frame);
+                final long start = System.nanoTime();
+                try {
+                    player.game.updateFrame();
+                    final Collection<hlt.Command> commands = player.bot.takeTurn(player.game);
+                    player.game.endTurn(commands);
+                    commandLines.set(player.id, player.fromBot.readLine());
+                } catch (final RuntimeException e) {
+                    eliminate(player, "turn " + turn + ": " + e);
+                }
+                turnNanos[player.id][turn - 1] = System.nanoTime() - start;
+            }
+
+            processTurn(commandLines, turn);
+            if (replayFrames != null) {
+                recordFrame();
+            }
+        }
+
+        return result();
+    }
+
+    private void processTurn(final List<String> commandLines, final int turn) {
+        updateInspiration();
+
+        final boolean[] spawns = new boolean[players.length];
+        for (final SimPlayer player : players) {
+            if (player.error == null) {
+                applyCommands(player, commandLines.get(player.id), spawns, turn);
+            }
+        }
+
+        for (final SimPlayer player : players) {
+            if (spawns[player.id] && player.error == null) {
+                player.halite -= SHIP_COST;
+                player.ships.add(new SimShip(nextEntityId++, player.shipyard));
+                ++player.shipsBuilt;
+                recordEvent("spawn", nextEntityId - 1, player.shipyard, player.id);
+            }
+        }
+
+        resolveCollisions();
+        mine();
+        deposit();
+    }
+
+    private void applyCommands(final SimPlayer player, final String line, final boolean[] spawns, final int turn) {
+        final String[] tokens = line == null ? new String[0] : line.trim().split("\\s+");
+        final SimShip[] commanded = new SimShip[player.ships.size()];
+        final char[] actions = new char[player.ships.size()];
+        int constructCost = 0;
+
+        for (int i = 0; i < tokens.length; ++i) {
+            final String token = tokens[i];
+            if (token.isEmpty()) {
+                continue;
+            }
+
+            if (token.equals("g")) {
+                if (spawns[player.id]) {
+                    eliminate(player, "turn " + turn + ": spawned twice");
+                    return;
+                }
+                spawns[player.id] = true;
+                continue;
+            }
+
+            if ((!token.equals("c") && !token.equals("m")) || i + 1 >= tokens.length) {
+                eliminate(player, "turn " + turn + ": cannot parse command '" + token + "'");
+                return;
+            }
+
+            final int slot;
+            try {
+                slot = shipSlot(player, Integer.parseInt(tokens[++i]));
+            } catch (final NumberFormatException e) {
+                eliminate(player, "turn " + turn + ": bad ship id '" + tokens[i] + "'");
+                return;
+            }
+            if (slot < 0 || commanded[slot] != null) {
+                eliminate(player, "turn " + turn + ": bad or repeated command for ship " + tokens[i]);
+                return;
+            }
+            commanded[slot] = player.ships.get(slot);
+
+            if (token.equals("c")) {
+                actions[slot] = 'c';
+                final SimShip ship = commanded[slot];
+                if (structureOwner[ship.cell] >= 0) {
+                    eliminate(player, "turn " + turn + ": ship " + ship.id + " cannot build on a structure");
+                    return;
+                }
+                constructCost += DROPOFF_COST - ship.halite - halite[ship.cell];
+            } else {
+                if (i + 1 >= tokens.length || tokens[i + 1].length() != 1 || "nsewo".indexOf(tokens[i + 1].charAt(0)) < 0) {
+                    eliminate(player, "turn " + turn + ": bad direction for ship " + tokens[i]);
+                    return;
+                }
+                actions[slot] = tokens[++i].charAt(0);
+            }
+        }
+
+        if ((spawns[player.id] ? SHIP_COST : 0) + constructCost > player.halite) {
+            eliminate(player, "turn " + turn + ": not enough halite for the spawns and dropoffs issued");
+            return;
+        }
+
+        for (int slot = 0; slot < actions.length; ++slot) {
+            final SimShip ship = player.ships.get(slot);
+            ship.mining = false;
+
+            switch (actions[slot]) {
+                case 'c':
+                    player.halite += ship.halite + halite[ship.cell] - DROPOFF_COST;
+                    halite[ship.cell] = 0;
+                    structureOwner[ship.cell] = player.id;
+                    player.dropoffs.add(new int[] { nextEntityId++, ship.cell });
+                    recordEvent("construct", nextEntityId - 1, ship.cell, player.id);
+                    ship.destroyed = true;
+                    break;
+                case 'n':
+                case 's':
+                case 'e':
+                case 'w': {
+                    final int ratio = ship.inspired ? INSPIRED_MOVE_COST_RATIO : MOVE_COST_RATIO;
+                    final int cost = halite[ship.cell] / ratio;
+                    if (ship.halite >= cost) {
+                        ship.halite -= cost;
+                        ship.cell = neighbor(ship.cell, actions[slot]);
+                    }
+                    break;
+                }
+                default:
+                    // 'o' or no command at all: the ship stays and collects.
+                    ship.mining = true;
+                    break;
+            }
+        }
+        player.ships.removeIf(ship -> ship.destroyed);
+    }
+
+    private void updateInspiration() {
+        for (final SimPlayer player : players) {
+            for (final SimShip ship : player.ships) {
+                int nearbyOpponents = 0;
+                for (final SimPlayer other : players) {
+                    if (other == player) {
+                        continue;
+                    }
+                    for (final SimShip enemy : other.ships) {
+                        if (distance(ship.cell, enemy.cell) <= INSPIRATION_RADIUS) {
+                            ++nearbyOpponents;
+                        }
+                    }
+                }
+                ship.inspired = nearbyOpponents >= INSPIRATION_SHIP_COUNT;
+            }
+        }
+    }
+
+    private void resolveCollisions() {
+        final int[] count = new int[width * height];
+        for (final SimPlayer player : players) {
+            for (final SimShip ship : player.ships) {
+                ++count[ship.cell];
+            }
+        }
+
+        for (final SimPlayer player : players) {
+            for (final SimShip ship : player.ships) {
+                if (count[ship.cell] < 2) {
+                    continue;
+                }
+                // Cargo sinks into the sea, or goes to the owner if the crash is on a structure.
+                if (structureOwner[ship.cell] >= 0) {
+                    players[structureOwner[ship.cell]].halite += ship.halite;
+                } else {
+                    halite[ship.cell] += ship.halite;
+                }
+                ship.destroyed = true;
+            }
+        }
+
+        for (final SimPlayer player : players) {
+            player.ships.removeIf(ship -> ship.destroyed);
+        }
+    }
+
+    private void mine() {
+        for (final SimPlayer player : players) {
+            for (final SimShip ship : player.ships) {
+                if (!ship.mining) {
+                    continue;
+                }
+
+                final int ratio = ship.inspired ? INSPIRED_EXTRACT_RATIO : EXTRACT_RATIO;
+                int extracted = (halite[ship.cell] + ratio - 1) / ratio;
+                extracted = Math.min(extracted, MAX_HALITE - ship.halite);
+                halite[ship.cell] -= extracted;
+                ship.halite += extracted;
+
+                if (ship.inspired) {
+                    final int bonus = (int) (extracted * INSPIRED_BONUS_MULTIPLIER);
+                    ship.halite += Math.min(bonus, MAX_HALITE - ship.halite);
+                }
+            }
+        }
+    }
+
+    private void deposit() {
+        for (final SimPlayer player : players) {
+            for (final SimShip ship : player.ships) {
+                if (structureOwner[ship.cell] == player.id) {
+                    player.halite += ship.halite;
+                    ship.halite = 0;
+                }
+            }
+        }
+    }
+
+    // One full frame: the cells that changed, and every player's halite and ships after the turn.
+    private void recordFrame() {
+        final StringBuilder frame = new StringBuilder("{\"cells\":[");
+        boolean first = true;
+        for (int cell = 0; cell < halite.length; ++cell) {
+            if (halite[cell] != replayHalite[cell]) {
+                frame.append(first ? "" : ",").append("{\"x\":").append(cell % width).append(",\"y\":")
+                        .append(cell / width).append(",\"production\":").append(halite[cell]).append('}');
+                replayHalite[cell] = halite[cell];
+                first = false;
+            }
+        }
+
+        frame.append("],\"energy\":{");
+        for (final SimPlayer player : players) {
+            frame.append(player.id == 0 ? "" : ",").append('"').append(player.id).append("\":").append(player.halite);
+        }
+        frame.append("},\"entities\":{");
+        for (final SimPlayer player : players) {
+            frame.append(player.id == 0 ? "" : ",").append('"').append(player.id).append("\":{");
+            for (int slot = 0; slot < player.ships.size(); ++slot) {
+                final SimShip ship = player.ships.get(slot);
+                frame.append(slot == 0 ? "" : ",").append('"').append(ship.id).append("\":{\"x\":")
+                        .append(ship.cell % width).append(",\"y\":").append(ship.cell / width)
+                        .append(",\"energy\":").append(ship.halite)
+                        .append(",\"is_inspired\":").append(ship.inspired).append('}');
+            }
+            frame.append('}');
+        }
+        frame.append("},\"events\":[").append(replayEvents).append("]}");
+        replayEvents.setLength(0);
+
+        if (replayFrames.length() > 0) {
+            replayFrames.append(',');
+        }
+        replayFrames.append(frame);
+    }
+
+    private void recordEvent(final String type, final int id, final int cell, final int owner) {
+        if (replayEvents == null) {
+            return;
+        }
+        replayEvents.append(replayEvents.length() == 0 ? "" : ",").append("{\"type\":\"").append(type)
+                .append("\",\"id\":").append(id).append(",\"location\":").append(location(cell))
+                .append(",\"owner_id\":").append(owner).append('}');
+    }
+
+    private String location(final int cell) {
+        return "{\"x\":" + cell % width + ",\"y\":" + cell / width + "}";
+    }
+
+    private void eliminate(final SimPlayer player, final String reason) {
+        if (player.error != null) {
+            return;
+        }
+        player.error = reason;
+        player.ships.clear();
+    }
+
+    private int shipSlot(final SimPlayer player, final int id) {
+        for (int slot = 0; slot < player.ships.size(); ++slot) {
+            if (player.ships.get(slot).id == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int neighbor(final int cell, final char direction) {
+        final int x = cell % width;
+        final int y = cell / width;
+        switch (direction) {
+            case 'n': return ((y + height - 1) % height) * width + x;
+            case 's': return ((y + 1) % height) * width + x;
+            case 'e': return y * width + (x + 1) % width;
+            case 'w': return y * width + (x + width - 1) % width;
+            default: return cell;
+        }
+    }
+
+    private int distance(final int a, final int b) {
+        final int dx = Math.abs(a % width - b % width);
+        final int dy = Math.abs(a / width - b / width);
+        return Math.min(dx, width - dx) + Math.min(dy, height - dy);
+    }
+
+    // The first line the engine sends: every game constant as one JSON object.
+    static String constantsLine(final long seed, final int maxTurns) {
+        return new StringBuilder().append("{\"DROPOFF_COST\":").append(DROPOFF_COST)
+                .append(",\"EXTRACT_RATIO\":").append(EXTRACT_RATIO)
+                .append(",\"INITIAL_ENERGY\":").append(INITIAL_HALITE)
+                .append(",\"INSPIRATION_ENABLED\":true")
+                .append(",\"INSPIRATION_RADIUS\":").append(INSPIRATION_RADIUS)
+                .append(",\"INSPIRATION_SHIP_COUNT\":").append(INSPIRATION_SHIP_COUNT)
+                .append(",\"INSPIRED_BONUS_MULTIPLIER\":").append(INSPIRED_BONUS_MULTIPLIER)
+                .append(",\"INSPIRED_EXTRACT_RATIO\":").append(INSPIRED_EXTRACT_RATIO)
+                .append(",\"INSPIRED_MOVE_COST_RATIO\":").append(INSPIRED_MOVE_COST_RATIO)
+                .append(",\"MAX_ENERGY\":").append(MAX_HALITE)
+                .append(",\"MAX_TURNS\":").append(maxTurns)
+                .append(",\"MOVE_COST_RATIO\":").append(MOVE_COST_RATIO)
+                .append(",\"NEW_ENTITY_ENERGY_COST\":").append(SHIP_COST)
+                .append(",\"game_seed\":").append(seed)
+                .append("}")
+                .toString();
+    }
+
+    private byte[] initialFrame(final int playerId) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(constantsLine(seed, maxTurns)).append('\n');
+
+        builder.append(players.length).append(' ').append(playerId).append('\n');
+        for (final SimPlayer player : players) {
+            builder.append(player.id).append(' ').append(player.shipyard % width).append(' ')
+                    .append(player.shipyard / width).append('\n');
+        }
+
+        builder.append(width).append(' ').append(height).append('\n');
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                builder.append(x == 0 ? "" : " ").append(halite[y * width + x]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] turnFrame(final int turn) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(turn).append('\n');
+
+        for (final SimPlayer player : players) {
+            builder.append(player.id).append(' ').append(player.ships.size()).append(' ')
+                    .append(player.dropoffs.size()).append(' ').append(player.halite).append('\n');
+            for (final SimShip ship : player.ships) {
+                builder.append(ship.id).append(' ').append(ship.cell % width).append(' ')
+                        .append(ship.cell / width).append(' ').append(ship.halite).append('\n');
+            }
+            for (final int[] dropoff : player.dropoffs) {
+                builder.append(dropoff[0]).append(' ').append(dropoff[1] % width).append(' ')
+                        .append(dropoff[1] / width).append('\n');
+            }
+        }
+
+        int updates = 0;
+        final StringBuilder cells = new StringBuilder();
+        for (int cell = 0; cell < halite.length; ++cell) {
+            if (halite[cell] != sentHalite[cell]) {
+                cells.append(cell % width).append(' ').append(cell / width).append(' ').append(halite[cell]).append('\n');
+                sentHalite[cell] = halite[cell];
+                ++updates;
+            }
+        }
+        builder.append(updates).append('\n').append(cells);
+
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private GameResult result() {
+        final String[] names = new String[players.length];
+        final int[] finalHalite = new int[players.length];
+        final int[] shipsBuilt = new int[players.length];
+        final String[] errors = new String[players.length];
+        final Integer[] order = new Integer[players.length];
+
+        for (final SimPlayer player : players) {
+            names[player.id] = player.name != null ? player.name : player.bot.getClass().getSimpleName();
+            finalHalite[player.id] = player.halite;
+            shipsBuilt[player.id] = player.shipsBuilt;
+            errors[player.id] = player.error;
+            order[player.id] = player.id;
+        }
+
+        // Players that were removed rank below everyone who finished, then by halite.
+        Arrays.sort(order, (a, b) -> {
+            if ((errors[a] == null) != (errors[b] == null)) {
+                return errors[a] == null ? -1 : 1;
+            }
+            return Integer.compare(finalHalite[b], finalHalite[a]);
+        });
+        final int[] rank = new int[players.length];
+        for (int i = 0; i < order.length; ++i) {
+            rank[order[i]] = i + 1;
+        }
+
+        return new GameResult(seed, width, maxTurns, names, finalHalite, rank, shipsBuilt, errors, turnNanos);
+    }
+}
@@ -0,0 +1,198 @@
+package hlt.sim;
+
+import hlt.Direction;
+import hlt.Game;
+import hlt.GameMap;
+import hlt.Input;
+import hlt.IntSet;
+import hlt.Output;
+import hlt.Player;
+import hlt.Position;
+import hlt.Ship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// A synthetic position for benchmarks: a generated map of one of the official
+// sizes with a realistic fleet for the stage of the game scattered around each
+// shipyard, fed through the real protocol into a hlt.Game as player 0. The turn frame is kept
+// so the parse path can be replayed, and the occupancy after reading it is kept
+// so benchmarks that reserve cells can put the map back between operations.
+public class MapFixture {
+    public static final int[] SIZES = { 32, 40, 48, 56, 64 };
+
+    public enum Fleet {
+        // About what each player has half way through a game, on turn 200: 24 to
+        // 48 ships with two players, 16 to 32 with four, within a quarter of the
+        // map of their shipyard.
+        MID,
+        // Three quarters of the way through a game, when a strong player has built
+        // all it will: 148 to 196 ships with two players, 116 to 132 with four,
+        // spread over half the map.
+        LATE
+    }
+
+    public final int size;
+    public final int numPlayers;
+    public final Fleet fleet;
+    public final int shipsPerPlayer;
+    public final Game game;
+    public final GameMap map;
+    public final Player me;
+    // My ships in map order, also as a list for the batch APIs, and where the greedy
+    // planner would send each of them.
+    public final Ship[] ships;
+    public final List<Ship> shipList;
+    public final Position[] targets;
+    // Random cell pairs for the distance and direction queries.
+    public final Position[] from;
+    public final Position[] to;
+
+    private final ByteQueue toBot = new ByteQueue();
+    private final byte[] turnFrame;
+    private final short[] occupancy;
+
+    public MapFixture(final long seed, final int size, final int numPlayers) {
+        this(seed, size, numPlayers, Fleet.MID);
+    }
+
+    public MapFixture(final long seed, final int size, final int numPlayers, final Fleet fleet) {
+        this.size = size;
+        this.numPlayers = numPlayers;
+        this.fleet = fleet;
+        if (fleet == Fleet.MID) {
+            this.shipsPerPlayer = numPlayers == 2 ? size * 3 / 4 : size / 2;
+        } else {
+            this.shipsPerPlayer = numPlayers == 2 ? 100 + size * 3 / 2 : 100 + size / 2;
+        }
+
+        final Random rng = new Random(seed);
+        final int[] halite = MapGenerator.generate(rng, size, size, numPlayers);
+        final int[] shipyards = MapGenerator.shipyards(size, size, numPlayers);
+        for (final int shipyard : shipyards) {
+            halite[shipyard] = 0;
+        }
+
+        toBot.write(initialFrame(seed, halite, shipyards));
+        game = new Game(new Input(toBot), new Output(new ByteQueue()));
+        map = game.gameMap;
+        me = game.me;
+
+        turnFrame = turnFrame(rng, halite, shipyards);
+        replayTurn();
+        map.prepareConcurrentReads();
+        occupancy = map.occupantId.clone();
+
+        ships = me.ships.values().toArray(new Ship[0]);
+        shipList = Collections.unmodifiableList(Arrays.asList(ships));
+        targets = new Position[ships.length];
+        for (int i = 0; i < ships.length; ++i) {
+            targets[i] = map.highestValueLocation(ships[i], me);
+        }
+
+        from = new Position[1024];
+        to = new Position[1024];
+        for (int i = 0; i < from.length; ++i) {
+            from[i] = new Position(rng.nextInt(size), rng.nextInt(size));
+            to[i] = new Position(rng.nextInt(size), rng.nextInt(size));
+        }
+    }
+
+    // Reads the same turn frame again through Input and Game.updateFrame.
+    public void replayTurn() {
+        toBot.write(turnFrame);
+        game.updateFrame();
+    }
+
+    // Undoes every reservation made since the turn frame was read.
+    public void restoreOccupancy() {
+        System.arraycopy(occupancy, 0, map.occupantId, 0, occupancy.length);
+    }
+
+    // Gives every ship its candidate moves towards its target, as the bot does before navigating.
+    public void prepareMoves(final IntSet shipsToMove) {
+        shipsToMove.clear();
+        for (int i = 0; i < ships.length; ++i) {
+            final Ship ship = ships[i];
+            ship.visited = false;
+            ship.moves.clear();
+            ship.moves.addAll(map.getUnsafeMoves(ship.position, targets[i]));
+            if (ship.moves.isEmpty()) {
+                ship.moves.add(Direction.STILL);
+            }
+            shipsToMove.add(ship.id.id);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + "/" + numPlayers + "p/" + shipsPerPlayer + " ships";
+    }
+
+    private byte[] initialFrame(final long seed, final int[] halite, final int[] shipyards) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(LocalGame.constantsLine(seed, LocalGame.maxTurns(size))).append('\n');
+        builder.append(numPlayers).append(" 0\n");
+        for (int id = 0; id < numPlayers; ++id) {
+            builder.append(id).append(' ').append(shipyards[id] % size).append(' ')
+                    .append(shipyards[id] / size).append('\n');
+        }
+
+        builder.append(size).append(' ').append(size).append('\n');
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                builder.append(x == 0 ? "" : " ").append(halite[y * size + x]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Scatters each fleet around its shipyard, and has every ship mine its cell
+    // down by a quarter as the cell updates of the frame.
+    private byte[] turnFrame(final Random rng, final int[] halite, final int[] shipyards) {
+        final boolean[] taken = new boolean[size * size];
+        for (final int shipyard : shipyards) {
+            taken[shipyard] = true;
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        final StringBuilder cells = new StringBuilder();
+        final int radius = fleet == Fleet.MID ? size / 4 : size / 2;
+        int nextId = 0;
+        int updates = 0;
+
+        builder.append(fleet == Fleet.MID ? 200 : LocalGame.maxTurns(size) * 3 / 4).append('\n');
+        for (int id = 0; id < numPlayers; ++id) {
+            builder.append(id).append(' ').append(shipsPerPlayer).append(" 0 ")
+                    .append(rng.nextInt(20000)).append('\n');
+
+            for (int count = 0; count < shipsPerPlayer; ++count) {
+                int cell;
+                do {
+                    final int dx = rng.nextInt(2 * radius + 1) - radius;
+                    final int remaining = radius - Math.abs(dx);
+                    final int dy = rng.nextInt(2 * remaining + 1) - remaining;
+                    final int x = Math.floorMod(shipyards[id] % size + dx, size);
+                    final int y = Math.floorMod(shipyards[id] / size + dy, size);
+                    cell = y * size + x;
+                } while (taken[cell]);
+                taken[cell] = true;
+
+                builder.append(nextId++).append(' ').append(cell % size).append(' ').append(cell / size)
+                        .append(' ').append(rng.nextInt(1001)).append('\n');
+
+                if (halite[cell] > 0) {
+                    cells.append(cell % size).append(' ').append(cell / size).append(' ')
+                            .append(halite[cell] - (halite[cell] + 3) / 4).append('\n');
+                    ++updates;
+                }
+            }
+        }
+        builder.append(updates).append('\n').append(cells);
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
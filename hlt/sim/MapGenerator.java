@@ -0,0 +1,75 @@
+package hlt.sim;
+
+import java.util.Random;
+
+// Builds a symmetric halite map: one tile (a half for two players, a quadrant for
+// four) is filled with smoothed random noise and then mirrored, so that every
+// player starts from an equivalent position.
+class MapGenerator {
+    private static final int MAX_CELL_HALITE = 1000;
+    private static final int SMOOTHING_PASSES = 3;
+    // Raising the noise to a power turns it into a few rich patches on a poor background.
+    private static final double CLUSTER_EXPONENT = 3.0;
+
+    static int[] generate(final Random rng, final int width, final int height, final int numPlayers) {
+        final int tileWidth = width / 2;
+        final int tileHeight = numPlayers > 2 ? height / 2 : height;
+
+        double[] tile = new double[tileWidth * tileHeight];
+        for (int i = 0; i < tile.length; ++i) {
+            tile[i] = rng.nextDouble();
+        }
+        for (int pass = 0; pass < SMOOTHING_PASSES; ++pass) {
+            tile = smooth(tile, tileWidth, tileHeight);
+        }
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (final double value : tile) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        final int[] halite = new int[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                final int tileX = x < tileWidth ? x : width - 1 - x;
+                final int tileY = y < tileHeight ? y : height - 1 - y;
+                final double normalized = (tile[tileY * tileWidth + tileX] - min) / Math.max(1e-9, max - min);
+                halite[y * width + x] = (int) Math.round(Math.pow(normalized, CLUSTER_EXPONENT) * MAX_CELL_HALITE);
+            }
+        }
+        return halite;
+    }
+
+    // Shipyards sit a quarter of the way in from the edges, mirrored like the halite.
+    static int[] shipyards(final int width, final int height, final int numPlayers) {
+        final int left = width / 4;
+        final int right = width - 1 - left;
+        final int top = height / 4;
+        final int bottom = height - 1 - top;
+
+        if (numPlayers == 2) {
+            return new int[] { (height / 2) * width + left, (height / 2) * width + right };
+        }
+        return new int[] { top * width + left, top * width + right, bottom * width + left, bottom * width + right };
+    }
+
+    private static double[] smooth(final double[] tile, final int width, final int height) {
+        final double[] result = new double[tile.length];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                double sum = 0;
+                for (int dy = -1; dy <= 1; ++dy) {
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        final int nx = Math.min(width - 1, Math.max(0, x + dx));
+                        final int ny = Math.min(height - 1, Math.max(0, y + dy));
+                        sum += tile[ny * width + nx];
+                    }
+                }
+                result[y * width + x] = sum / 9;
+            }
+        }
+        return result;
+    }
+}
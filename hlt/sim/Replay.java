@@ -0,0 +1,254 @@
+package hlt.sim;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+// A recorded game, read back as the frames the engine sent the bots. Replays are
+// the engine's JSON: zstd compressed as the engine writes them to replays/ (read
+// through the zstd command, since Java has no decoder of its own), gzipped, or
+// plain as the Simulator writes them with --replays.
+//
+// full_frames[0] is the game before the first turn and full_frames[k] the game
+// after k turns: the halite of the cells that changed, every player's halite and
+// ships, and events such as the dropoffs built. Turn t is played on what
+// full_frames[t - 1] leaves, so a replay of n frames has n - 1 turns.
+public class Replay {
+    private static final int[] ZSTD_MAGIC = { 0x28, 0xb5, 0x2f, 0xfd };
+    private static final int[] GZIP_MAGIC = { 0x1f, 0x8b };
+
+    // Where everything stands at the start of one turn.
+    private static final class State {
+        final int[] halite;
+        final int[] playerHalite;
+        // ships.get(player) holds { id, cell, halite } and dropoffs.get(player) { id, cell }.
+        final List<List<int[]>> ships = new ArrayList<>();
+        final List<List<int[]>> dropoffs = new ArrayList<>();
+
+        State(final int[] halite, final int numPlayers) {
+            this.halite = halite;
+            this.playerHalite = new int[numPlayers];
+            for (int player = 0; player < numPlayers; ++player) {
+                ships.add(new ArrayList<>());
+                dropoffs.add(new ArrayList<>());
+            }
+        }
+    }
+
+    public final int width;
+    public final int height;
+    public final int numPlayers;
+    public final int turns;
+    public final String[] playerNames;
+
+    private final String constantsLine;
+    private final int[] shipyards;
+    // states[t - 1] is the game at the start of turn t.
+    private final State[] states;
+
+    private Replay(final Map<String, Object> json) {
+        constantsLine = Json.write(Json.object(json.get("GAME_CONSTANTS")));
+
+        final List<Object> players = Json.array(json.get("players"));
+        numPlayers = players.size();
+        playerNames = new String[numPlayers];
+        final Map<String, Object> productionMap = Json.object(json.get("production_map"));
+        width = Json.integer(productionMap.get("width"));
+        height = Json.integer(productionMap.get("height"));
+
+        shipyards = new int[numPlayers];
+        for (final Object entry : players) {
+            final Map<String, Object> player = Json.object(entry);
+            final int id = Json.integer(player.get("player_id"));
+            playerNames[id] = String.valueOf(player.get("name"));
+            shipyards[id] = cell(Json.object(player.get("factory_location")));
+        }
+
+        final int[] halite = new int[width * height];
+        final List<Object> grid = Json.array(productionMap.get("grid"));
+        for (int y = 0; y < height; ++y) {
+            final List<Object> row = Json.array(grid.get(y));
+            for (int x = 0; x < width; ++x) {
+                halite[y * width + x] = Json.integer(Json.object(row.get(x)).get("energy"));
+            }
+        }
+
+        final List<Object> frames = Json.array(json.get("full_frames"));
+        turns = frames.size() - 1;
+        states = new State[Math.max(0, turns)];
+        final List<List<int[]>> dropoffs = new ArrayList<>();
+        for (int player = 0; player < numPlayers; ++player) {
+            dropoffs.add(new ArrayList<>());
+        }
+        for (int turn = 1; turn <= turns; ++turn) {
+            final Map<String, Object> frame = Json.object(frames.get(turn - 1));
+            for (final Object entry : Json.array(frame.get("cells"))) {
+                final Map<String, Object> cell = Json.object(entry);
+                halite[cell(cell)] = Json.integer(cell.get("production"));
+            }
+            for (final Object entry : Json.array(frame.get("events"))) {
+                final Map<String, Object> event = Json.object(entry);
+                if ("construct".equals(event.get("type"))) {
+                    dropoffs.get(Json.integer(event.get("owner_id"))).add(new int[] {
+                            Json.integer(event.get("id")), cell(Json.object(event.get("location"))) });
+                }
+            }
+
+            final State state = new State(halite.clone(), numPlayers);
+            final Map<String, Object> energy = Json.object(frame.get("energy"));
+            final Map<String, Object> entities = Json.object(frame.get("entities"));
+            for (int player = 0; player < numPlayers; ++player) {
+                final String key = String.valueOf(player);
+                state.playerHalite[player] = energy.containsKey(key) ? Json.integer(energy.get(key)) : 0;
+                state.dropoffs.get(player).addAll(dropoffs.get(player));
+                if (!entities.containsKey(key)) {
+                    continue;
+                }
+                for (final Map.Entry<String, Object> ship : Json.object(entities.get(key)).entrySet()) {
+                    final Map<String, Object> fields = Json.object(ship.getValue());
+                    state.ships.get(player).add(new int[] {
+                            Integer.parseInt(ship.getKey()), cell(fields), Json.integer(fields.get("energy")) });
+                }
+            }
+            states[turn - 1] = state;
+        }
+    }
+
+    public static Replay read(final Path file) throws IOException {
+        final Object json;
+        try (InputStream in = open(file)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1 << 16];
+            for (int count; (count = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, count);
+            }
+            json = Json.parse(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+        return new Replay(Json.object(json));
+    }
+
+    private static InputStream open(final Path file) throws IOException {
+        final InputStream in = new BufferedInputStream(Files.newInputStream(file));
+        in.mark(ZSTD_MAGIC.length);
+        final int[] head = new int[ZSTD_MAGIC.length];
+        for (int i = 0; i < head.length; ++i) {
+            head[i] = in.read();
+        }
+        in.reset();
+
+        if (startsWith(head, GZIP_MAGIC)) {
+            return new GZIPInputStream(in);
+        }
+        if (!startsWith(head, ZSTD_MAGIC)) {
+            return in;
+        }
+        in.close();
+        try {
+            final Process zstd = new ProcessBuilder("zstd", "-dc", file.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            zstd.getOutputStream().close();
+            return zstd.getInputStream();
+        } catch (final IOException e) {
+            throw new IOException(file + " is zstd compressed and the zstd command is not available;"
+                    + " decompress it first with zstd -d", e);
+        }
+    }
+
+    private static boolean startsWith(final int[] head, final int[] magic) {
+        for (int i = 0; i < magic.length; ++i) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The ships player has at the start of turn.
+    public int shipCount(final int turn, final int player) {
+        return state(turn).ships.get(player).size();
+    }
+
+    // The halite of every cell at the start of turn, indexed by y * width + x.
+    public int[] haliteAt(final int turn) {
+        return state(turn).halite.clone();
+    }
+
+    // What the engine sends playerId before the game starts, but with the map as
+    // it stands at the start of turn, so a bot can be dropped into the middle of the game.
+    public byte[] initialFrame(final int playerId, final int turn) {
+        final int[] halite = state(turn).halite;
+        final StringBuilder builder = new StringBuilder();
+        builder.append(constantsLine).append('\n');
+        builder.append(numPlayers).append(' ').append(playerId).append('\n');
+        for (int player = 0; player < numPlayers; ++player) {
+            builder.append(player).append(' ').append(shipyards[player] % width).append(' ')
+                    .append(shipyards[player] / width).append('\n');
+        }
+
+        builder.append(width).append(' ').append(height).append('\n');
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                builder.append(x == 0 ? "" : " ").append(halite[y * width + x]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // The frame of turn, with the cells whose halite differs from sentHalite,
+    // which is then brought up to date as a bot's map would be.
+    public byte[] turnFrame(final int turn, final int[] sentHalite) {
+        final State state = state(turn);
+        final StringBuilder builder = new StringBuilder();
+        builder.append(turn).append('\n');
+
+        for (int player = 0; player < numPlayers; ++player) {
+            final List<int[]> ships = state.ships.get(player);
+            final List<int[]> dropoffs = state.dropoffs.get(player);
+            builder.append(player).append(' ').append(ships.size()).append(' ')
+                    .append(dropoffs.size()).append(' ').append(state.playerHalite[player]).append('\n');
+            for (final int[] ship : ships) {
+                builder.append(ship[0]).append(' ').append(ship[1] % width).append(' ')
+                        .append(ship[1] / width).append(' ').append(ship[2]).append('\n');
+            }
+            for (final int[] dropoff : dropoffs) {
+                builder.append(dropoff[0]).append(' ').append(dropoff[1] % width).append(' ')
+                        .append(dropoff[1] / width).append('\n');
+            }
+        }
+
+        int updates = 0;
+        final StringBuilder cells = new StringBuilder();
+        for (int cell = 0; cell < state.halite.length; ++cell) {
+            if (state.halite[cell] != sentHalite[cell]) {
+                cells.append(cell % width).append(' ').append(cell / width).append(' ')
+                        .append(state.halite[cell]).append('\n');
+                sentHalite[cell] = state.halite[cell];
+                ++updates;
+            }
+        }
+        builder.append(updates).append('\n').append(cells);
+
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private State state(final int turn) {
+        if (turn < 1 || turn > turns) {
+            throw new IllegalArgumentException("turn " + turn + " is not in the replay's 1 to " + turns);
+        }
+        return states[turn - 1];
+    }
+
+    private int cell(final Map<String, Object> location) {
+        return Json.integer(location.get("y")) * width + Json.integer(location.get("x"));
+    }
+}
@@ -0,0 +1,181 @@
+package hlt.sim;
+
+import hlt.Bot;
+import hlt.Command;
+import hlt.Game;
+import hlt.Input;
+import hlt.Log;
+import hlt.Output;
+import hlt.TurnMetrics;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Plays the turns of a recorded game to a bot without the engine, to profile the
+// exact turns that were slow in a real game.
+//
+//     java hlt.sim.ReplayHarness [--player P] [--turns 120,250 | --slowest N] [--warmup W]
+//                                [--iterations K] [--seed S] replay.hlt [BotClass[:key=value,...]]
+//
+// Without --turns the bot first plays the whole replay as player P, turn by turn,
+// seeing each frame as the engine sent it; its own commands are ignored, since
+// the replay decides what happened. That first pass is not timed, so the JIT has
+// compiled the bot before a second pass ranks the turns. The N slowest turns of
+// the second pass are then profiled, as are the turns given with --turns. Every
+// one of the W + K runs of a profiled turn starts a fresh bot at turn 1, plays it
+// up to the turn untimed and times the turn itself, so each run measures the same
+// computation from the same bot state; the K runs after the W warm-up ones are
+// reported. Run with -Dhlt.metrics=trace to also get bot-P-metrics.csv with the
+// per-phase times of the ranking pass.
+public class ReplayHarness {
+    public static void main(final String[] args) throws Exception {
+        int player = 0;
+        int[] turns = null;
+        int slowest = 5;
+        int warmup = 3;
+        int iterations = 15;
+        long seed = 0;
+        final List<String> positional = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--player": player = Integer.parseInt(args[++i]); break;
+                case "--turns": turns = parseInts(args[++i]); break;
+                case "--slowest": slowest = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: positional.add(args[i]); break;
+            }
+        }
+        if (positional.isEmpty() || positional.size() > 2) {
+            System.err.println("usage: ReplayHarness [--player P] [--turns T,T | --slowest N] [--warmup W]"
+                    + " [--iterations K] [--seed S] replay.hlt [BotClass[:key=value,...]]");
+            System.exit(1);
+        }
+        final String botSpec = positional.size() > 1 ? positional.get(1) : "MyBot";
+
+        Log.disable();
+        final Replay replay = Replay.read(Paths.get(positional.get(0)));
+        if (player < 0 || player >= replay.numPlayers) {
+            System.err.println("the replay has players 0 to " + (replay.numPlayers - 1));
+            System.exit(1);
+        }
+        System.out.printf("%dx%d, %d players, %d turns; playing %s as player %d (%s in the replay)%n",
+                replay.width, replay.height, replay.numPlayers, replay.turns, botSpec, player, replay.playerNames[player]);
+
+        final long[] passNanos = new long[replay.turns + 1];
+        if (turns == null) {
+            playThrough(replay, player, Simulator.createBot(botSpec, seed), null);
+            playThrough(replay, player, Simulator.createBot(botSpec, seed), passNanos);
+            final Integer[] order = new Integer[replay.turns];
+            for (int turn = 1; turn <= replay.turns; ++turn) {
+                order[turn - 1] = turn;
+            }
+            Arrays.sort(order, Comparator.comparingLong((Integer turn) -> passNanos[turn]).reversed());
+            turns = new int[Math.min(slowest, order.length)];
+            for (int i = 0; i < turns.length; ++i) {
+                turns[i] = order[i];
+            }
+        }
+
+        System.out.printf("%6s %6s %10s %10s %10s %10s %10s%n", "turn", "ships", "pass ms", "min ms", "p50 ms", "p90 ms", "max ms");
+        for (final int turn : turns) {
+            final long[] samples = profileTurn(replay, player, turn, botSpec, seed, warmup, iterations);
+            Arrays.sort(samples);
+            System.out.printf("%6d %6d %10s %10.3f %10.3f %10.3f %10.3f%n", turn, replay.shipCount(turn, player),
+                    passNanos[turn] == 0 ? "-" : String.format("%.3f", passNanos[turn] / 1e6),
+                    samples[0] / 1e6, percentile(samples, 0.5) / 1e6, percentile(samples, 0.9) / 1e6,
+                    samples[samples.length - 1] / 1e6);
+        }
+    }
+
+    // Every turn in order, as in the real game, timing each one into nanos[turn]
+    // when nanos is given.
+    private static void playThrough(final Replay replay, final int player, final Bot bot, final long[] nanos) {
+        final ByteQueue toBot = new ByteQueue();
+        final ByteQueue fromBot = new ByteQueue();
+        toBot.write(replay.initialFrame(player, 1));
+        final int[] sentHalite = replay.haliteAt(1);
+        final Game game = start(bot, player, toBot, fromBot);
+        if (nanos != null) {
+            game.metrics.open(player, TurnMetrics.Mode.OFF);
+        }
+
+        for (int turn = 1; turn <= replay.turns; ++turn) {
+            toBot.write(replay.turnFrame(turn, sentHalite));
+            final long turnNanos = playTurn(game, bot, fromBot);
+            if (nanos != null) {
+                nanos[turn] = turnNanos;
+            }
+        }
+        if (nanos != null) {
+            game.metrics.write();
+        }
+    }
+
+    // The one turn, warmup + iterations times, each time by a new bot that has
+    // played every turn before it.
+    private static long[] profileTurn(final Replay replay, final int player, final int turn, final String botSpec,
+                                      final long seed, final int warmup, final int iterations) throws Exception {
+        final long[] samples = new long[Math.max(1, iterations)];
+        for (int i = 0; i < warmup + samples.length; ++i) {
+            final Bot bot = Simulator.createBot(botSpec, seed);
+            final ByteQueue toBot = new ByteQueue();
+            final ByteQueue fromBot = new ByteQueue();
+            toBot.write(replay.initialFrame(player, 1));
+            final int[] sentHalite = replay.haliteAt(1);
+            final Game game = start(bot, player, toBot, fromBot);
+            for (int earlier = 1; earlier < turn; ++earlier) {
+                toBot.write(replay.turnFrame(earlier, sentHalite));
+                playTurn(game, bot, fromBot);
+            }
+
+            toBot.write(replay.turnFrame(turn, sentHalite));
+            final long nanos = playTurn(game, bot, fromBot);
+            if (i >= warmup) {
+                samples[i - warmup] = nanos;
+            }
+        }
+        return samples;
+    }
+
+    private static Game start(final Bot bot, final int player, final ByteQueue toBot, final ByteQueue fromBot) {
+        final Game game = new Game(new Input(toBot), new Output(fromBot));
+        if (game.myId.id != player) {
+            throw new IllegalStateException("the bot was given player " + game.myId.id + " instead of " + player);
+        }
+        bot.init(game);
+        game.ready(bot.name());
+        fromBot.readLine();
+        return game;
+    }
+
+    // Reads the queued frame and answers it, as LocalGame times a bot's turn.
+    private static long playTurn(final Game game, final Bot bot, final ByteQueue fromBot) {
+        final long start = System.nanoTime();
+        game.updateFrame();
+        final Collection<Command> commands = bot.takeTurn(game);
+        game.endTurn(commands);
+        final long nanos = System.nanoTime() - start;
+        fromBot.readLine();
+        return nanos;
+    }
+
+    private static int[] parseInts(final String list) {
+        final String[] parts = list.split(",");
+        final int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static long percentile(final long[] sorted, final double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))];
+    }
+}
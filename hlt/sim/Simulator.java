@@ -0,0 +1,101 @@
+package hlt.sim;
+
+import hlt.Bot;
+import hlt.Log;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Plays games between bots inside this JVM, without the halite binary.
+//
+//     java hlt.sim.Simulator [--games N] [--size S] [--seed S] [--replays DIR] MyBot MyBot [MyBot MyBot]
+//
+// Bots are given as ClassName or ClassName:key=value,key=value. The parameters
+// go to a (long seed, Map<String, String> params) constructor; without any, a
+// (long seed) constructor is used if there is one, otherwise the no-argument one.
+// With --replays every game is also saved as DIR/replay-<seed>-<size>.json, which
+// ReplayHarness can play back.
+public class Simulator {
+    public static void main(final String[] args) throws Exception {
+        int games = 1;
+        int size = 32;
+        long seed = System.nanoTime();
+        Path replays = null;
+        final List<String> botClasses = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--replays": replays = Paths.get(args[++i]); break;
+                default: botClasses.add(args[i]); break;
+            }
+        }
+        if (botClasses.size() != 2 && botClasses.size() != 4) {
+            System.err.println("usage: Simulator [--games N] [--size S] [--seed S] [--replays DIR] BotClass BotClass [BotClass BotClass]");
+            System.exit(1);
+        }
+
+        Log.disable();
+        if (replays != null) {
+            Files.createDirectories(replays);
+        }
+
+        final int[] wins = new int[botClasses.size()];
+        for (int game = 0; game < games; ++game) {
+            final long gameSeed = seed + game;
+            final LocalGame localGame = new LocalGame(gameSeed, size, createBots(botClasses, gameSeed));
+            if (replays != null) {
+                localGame.recordReplay();
+            }
+            final GameResult result = localGame.play();
+            if (replays != null) {
+                localGame.writeReplay(replays.resolve("replay-" + gameSeed + "-" + size + ".json"));
+            }
+            ++wins[result.winner()];
+            System.out.println(result);
+        }
+
+        for (int player = 0; player < wins.length; ++player) {
+            System.out.println(botClasses.get(player) + " (" + player + ") won " + wins[player] + " of " + games);
+        }
+    }
+
+    public static List<Bot> createBots(final List<String> botClasses, final long seed) throws ReflectiveOperationException {
+        final List<Bot> bots = new ArrayList<>();
+        for (int player = 0; player < botClasses.size(); ++player) {
+            bots.add(createBot(botClasses.get(player), seed * 31 + player));
+        }
+        return bots;
+    }
+
+    public static Bot createBot(final String spec, final long seed) throws ReflectiveOperationException {
+        final int colon = spec.indexOf(':');
+        final String className = colon < 0 ? spec : spec.substring(0, colon);
+        final Class<? extends Bot> botClass = Class.forName(className).asSubclass(Bot.class);
+
+        if (colon >= 0) {
+            final Map<String, String> params = new LinkedHashMap<>();
+            for (final String pair : spec.substring(colon + 1).split(",")) {
+                final int equals = pair.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("expected key=value in bot spec '" + spec + "'");
+                }
+                params.put(pair.substring(0, equals), pair.substring(equals + 1));
+            }
+            return botClass.getConstructor(long.class, Map.class).newInstance(seed, params);
+        }
+
+        try {
+            return botClass.getConstructor(long.class).newInstance(seed);
+        } catch (final NoSuchMethodException e) {
+            return botClass.getConstructor().newInstance();
+        }
+    }
+}
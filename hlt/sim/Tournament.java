@@ -0,0 +1,213 @@
+package hlt.sim;
+
+import hlt.Bot;
+import hlt.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs many seeded self-play games across all cores and compares bot variants.
+//
+//     java hlt.sim.Tournament [--games N] [--threads T] [--seed S] [--sizes 32,40,48,56,64] [--players 2,4]
+//                             MyBot MyBot:spawnCutoff=0.5,endgameMargin=10
+//
+// Game i is played on sizes[i % sizes] with players[(i / sizes) % players] seats,
+// and the variants are rotated through the seats so none keeps an advantage.
+// For every variant it reports, separately for 2 and 4 player games, the win
+// rate per seat with a 95% Wilson interval, the mean final halite with a 95%
+// normal interval, and turn time percentiles with 95% order-statistic intervals.
+//
+// hlt.Constants is shared by every bot in the process and MAX_TURNS depends on
+// the map size, so games of different sizes are never run at the same time.
+public class Tournament {
+    private static final double Z_95 = 1.96;
+
+    private static final class VariantStats {
+        int seats;
+        int wins;
+        int errors;
+        double haliteSum;
+        double haliteSquareSum;
+        long[] turnNanos = new long[1024];
+        int turnCount;
+
+        void add(final GameResult result, final int player) {
+            ++seats;
+            if (result.rank[player] == 1) {
+                ++wins;
+            }
+            if (result.errors[player] != null) {
+                ++errors;
+            }
+            haliteSum += result.finalHalite[player];
+            haliteSquareSum += (double) result.finalHalite[player] * result.finalHalite[player];
+
+            final long[] nanos = result.turnNanos[player];
+            if (turnCount + nanos.length > turnNanos.length) {
+                turnNanos = Arrays.copyOf(turnNanos, Math.max(turnNanos.length * 2, turnCount + nanos.length));
+            }
+            for (final long value : nanos) {
+                if (value > 0) {
+                    turnNanos[turnCount++] = value;
+                }
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int[] sizes = { 32, 40, 48, 56, 64 };
+        int[] playerCounts = { 2, 4 };
+        final List<String> variants = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--sizes": sizes = parseInts(args[++i]); break;
+                case "--players": playerCounts = parseInts(args[++i]); break;
+                default: variants.add(args[i]); break;
+            }
+        }
+        if (variants.isEmpty()) {
+            System.err.println("usage: Tournament [--games N] [--threads T] [--seed S] [--sizes 32,64] [--players 2,4] Bot [Bot ...]");
+            System.exit(1);
+        }
+
+        Log.disable();
+
+        // stats.get(playerCount)[variant]
+        final Map<Integer, VariantStats[]> stats = new LinkedHashMap<>();
+        for (final int playerCount : playerCounts) {
+            final VariantStats[] perVariant = new VariantStats[variants.size()];
+            for (int v = 0; v < perVariant.length; ++v) {
+                perVariant[v] = new VariantStats();
+            }
+            stats.put(playerCount, perVariant);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+        try {
+            for (int sizeSlot = 0; sizeSlot < sizes.length; ++sizeSlot) {
+                final List<Future<GameResult>> results = new ArrayList<>();
+                final List<int[]> seatings = new ArrayList<>();
+
+                for (int game = sizeSlot; game < games; game += sizes.length) {
+                    final int size = sizes[sizeSlot];
+                    final int playerCount = playerCounts[(game / sizes.length) % playerCounts.length];
+                    final long gameSeed = seed + game;
+
+                    final int[] seating = new int[playerCount];
+                    final List<String> specs = new ArrayList<>();
+                    for (int seat = 0; seat < playerCount; ++seat) {
+                        seating[seat] = (seat + game) % variants.size();
+                        specs.add(variants.get(seating[seat]));
+                    }
+                    seatings.add(seating);
+
+                    results.add(executor.submit(() -> {
+                        final List<Bot> bots = Simulator.createBots(specs, gameSeed);
+                        return new LocalGame(gameSeed, size, bots).play();
+                    }));
+                }
+
+                for (int i = 0; i < results.size(); ++i) {
+                    final GameResult result = results.get(i).get();
+                    final int[] seating = seatings.get(i);
+                    for (int seat = 0; seat < seating.length; ++seat) {
+                        stats.get(seating.length)[seating[seat]].add(result, seat);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        System.out.printf("%d games on %d threads in %.1fs (seed %d)%n",
+                games, threads, (System.nanoTime() - start) / 1e9, seed);
+        for (final Map.Entry<Integer, VariantStats[]> entry : stats.entrySet()) {
+            report(entry.getKey(), variants, entry.getValue());
+        }
+    }
+
+    private static void report(final int playerCount, final List<String> variants, final VariantStats[] perVariant) {
+        if (perVariant[0].seats == 0) {
+            // No game had this many players.
+            return;
+        }
+
+        System.out.printf("%n%d player games%n", playerCount);
+        System.out.printf("%-40s %6s %22s %24s %22s %22s %9s %6s%n",
+                "variant", "seats", "win rate [95% CI]", "mean halite [95% CI]",
+                "p50 ms [95% CI]", "p99 ms [95% CI]", "max ms", "errors");
+
+        for (int v = 0; v < perVariant.length; ++v) {
+            final VariantStats s = perVariant[v];
+            if (s.seats == 0) {
+                continue;
+            }
+
+            final double winRate = (double) s.wins / s.seats;
+            final double[] winInterval = wilson(s.wins, s.seats);
+
+            final double mean = s.haliteSum / s.seats;
+            final double variance = s.seats > 1
+                    ? Math.max(0, (s.haliteSquareSum - s.seats * mean * mean) / (s.seats - 1)) : 0;
+            final double halfWidth = Z_95 * Math.sqrt(variance / s.seats);
+
+            final long[] sorted = Arrays.copyOf(s.turnNanos, s.turnCount);
+            Arrays.sort(sorted);
+
+            System.out.printf("%-40s %6d %22s %24s %22s %22s %9.2f %6d%n",
+                    variants.get(v), s.seats,
+                    String.format("%.3f [%.3f, %.3f]", winRate, winInterval[0], winInterval[1]),
+                    String.format("%.0f [%.0f, %.0f]", mean, mean - halfWidth, mean + halfWidth),
+                    percentileWithInterval(sorted, 0.50),
+                    percentileWithInterval(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                    s.errors);
+        }
+    }
+
+    private static double[] wilson(final int successes, final int trials) {
+        final double p = (double) successes / trials;
+        final double z2 = Z_95 * Z_95;
+        final double center = (p + z2 / (2 * trials)) / (1 + z2 / trials);
+        final double spread = Z_95 * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / (1 + z2 / trials);
+        return new double[] { Math.max(0, center - spread), Math.min(1, center + spread) };
+    }
+
+    // The interval comes from the ranks n*q -/+ z*sqrt(n*q*(1-q)) of the sorted sample.
+    private static String percentileWithInterval(final long[] sorted, final double q) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+
+        final int n = sorted.length;
+        final double spread = Z_95 * Math.sqrt(n * q * (1 - q));
+        final int point = Math.min(n - 1, (int) Math.floor(n * q));
+        final int low = Math.max(0, (int) Math.floor(n * q - spread));
+        final int high = Math.min(n - 1, (int) Math.ceil(n * q + spread));
+
+        return String.format("%.2f [%.2f, %.2f]", sorted[point] / 1e6, sorted[low] / 1e6, sorted[high] / 1e6);
+    }
+
+    private static int[] parseInts(final String list) {
+        final String[] parts = list.split(",");
+        final int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
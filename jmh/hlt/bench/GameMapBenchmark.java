@@ -0,0 +1,116 @@
+package hlt.bench;
+
+import hlt.Command;
+import hlt.IntSet;
+import hlt.Log;
+import hlt.Position;
+import hlt.Ship;
+import hlt.sim.MapFixture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// The GameMap hot paths and the frame parser under JMH, on the same MapFixture
+// positions as hlt.sim.Benchmarks: every official map size, two and four players,
+// mid-game and late-game fleets.
+//
+//     gradle jmh -PjmhArgs='GameMapBenchmark.resolveMoves -p size=64 -p fleet=LATE'
+//
+// Each operation takes the next ship or cell pair in turn, as in hlt.sim.Benchmarks,
+// so the numbers of the two runners can be compared.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GameMapBenchmark {
+    @Param({ "32", "40", "48", "56", "64" })
+    public int size;
+
+    @Param({ "2", "4" })
+    public int players;
+
+    @Param({ "MID", "LATE" })
+    public MapFixture.Fleet fleet;
+
+    private MapFixture fixture;
+    private final IntSet shipsToMove = new IntSet();
+    private final ArrayList<Command> commands = new ArrayList<>();
+    private int op;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Log.disable();
+        fixture = new MapFixture(size * 31L + players, size, players, fleet);
+    }
+
+    @Benchmark
+    public Position highestValueLocation() {
+        final Ship ship = fixture.ships[op++ % fixture.ships.length];
+        return fixture.map.highestValueLocation(ship, fixture.me);
+    }
+
+    @Benchmark
+    public int calculateDistance() {
+        final int pair = op++ & (fixture.from.length - 1);
+        return fixture.map.calculateDistance(fixture.from[pair], fixture.to[pair]);
+    }
+
+    @Benchmark
+    public void getUnsafeMoves(final Blackhole blackhole) {
+        final int pair = op++ & (fixture.from.length - 1);
+        blackhole.consume(fixture.map.getUnsafeMoves(fixture.from[pair], fixture.to[pair]));
+    }
+
+    // One operation settles my whole fleet's moves, as the bot does every turn,
+    // reserving them in an overlay that is then dropped.
+    @Benchmark
+    public void resolveMoves(final Blackhole blackhole) {
+        fixture.prepareMoves(shipsToMove);
+        commands.clear();
+        fixture.map.resolveMoves(fixture.map.overlay(), fixture.shipList, commands);
+        blackhole.consume(commands);
+    }
+
+    // The ship-by-ship navigation resolveMoves replaced, kept to compare against.
+    // One operation navigates my whole fleet, including putting the map back first.
+    @Benchmark
+    public void newNavigate(final Blackhole blackhole) {
+        fixture.restoreOccupancy();
+        fixture.prepareMoves(shipsToMove);
+        commands.clear();
+        for (final Ship ship : fixture.ships) {
+            if (shipsToMove.contains(ship.id.id)) {
+                fixture.map.newNavigate(ship, shipsToMove, commands);
+            }
+        }
+        blackhole.consume(commands);
+    }
+
+    @Benchmark
+    public void markEnemyShips(final Blackhole blackhole) {
+        fixture.map.markEnemyShips(fixture.me, fixture.game.players);
+        blackhole.consume(fixture.map.occupantId);
+    }
+
+    @Benchmark
+    public int updateFrame() {
+        fixture.replayTurn();
+        return fixture.game.turnNumber;
+    }
+}
@@ -0,0 +1,6 @@
+#!/bin/sh
+
+set -e
+
+javac MyBot.java hlt/sim/*.java
+java hlt.sim.Simulator --games 10 --size 32 MyBot MyBot